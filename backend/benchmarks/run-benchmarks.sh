@@ -0,0 +1,16 @@
+#!/usr/bin/env sh
+# Runs every benchmark with the GC profiler at 1 thread and at all cores,
+# writing one JSON result file per thread count into results/.
+# Extra arguments go to JMH, e.g. ./run-benchmarks.sh JwtBenchmark -p algorithm=HS256
+set -e
+cd "$(dirname "$0")"
+
+(cd .. && ./mvnw -q install -DskipTests)
+../mvnw -q -f pom.xml package
+
+mkdir -p results
+CORES=$(getconf _NPROCESSORS_ONLN)
+for THREADS in 1 "$CORES"; do
+    java -jar target/benchmarks.jar -prof gc -t "$THREADS" \
+        -rf json -rff "results/threads-$THREADS.json" "$@"
+done
@@ -0,0 +1,54 @@
+package in.nikhilsaini.authify.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import in.nikhilsaini.authify.dto.AuthResponse;
+import in.nikhilsaini.authify.dto.UserCredentials;
+import in.nikhilsaini.authify.dto.UserDto;
+import in.nikhilsaini.authify.security.JwtUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// JSON body of a successful login
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthResponseSerializationBenchmark {
+
+    private ObjectWriter writer;
+    private AuthResponse response;
+
+    @Setup
+    public void setup() {
+        writer = new ObjectMapper().writerFor(AuthResponse.class);
+        JwtUtil jwtUtil = BenchmarkSupport.jwtUtil("HS256", false);
+        UserCredentials user = BenchmarkSupport.user();
+        response = AuthResponse.builder()
+                .success(true)
+                .message("Login successful!")
+                .token(jwtUtil.generateToken(user))
+                .refreshToken(jwtUtil.generateRefreshToken(user, "bench-refresh", jwtUtil.refreshTokenExpiry()))
+                .role(user.role().name())
+                .user(UserDto.builder().id(user.id()).name(user.name()).email(user.email())
+                        .role(user.role().name()).build())
+                .build();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return writer.writeValueAsBytes(response);
+    }
+}
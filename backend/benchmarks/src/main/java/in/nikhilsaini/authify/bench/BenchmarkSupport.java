@@ -0,0 +1,107 @@
+package in.nikhilsaini.authify.bench;
+
+import in.nikhilsaini.authify.datasource.ReplicaRouting;
+import in.nikhilsaini.authify.dto.UserCredentials;
+import in.nikhilsaini.authify.entity.JwtSigningKey;
+import in.nikhilsaini.authify.enums.AuthProvider;
+import in.nikhilsaini.authify.enums.Role;
+import in.nikhilsaini.authify.repository.JwtSigningKeyRepository;
+import in.nikhilsaini.authify.security.JwtKeyRing;
+import in.nikhilsaini.authify.security.JwtUtil;
+import in.nikhilsaini.authify.security.VerifiedTokenCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+// Builds the beans under test the way Spring would, without starting a context
+final class BenchmarkSupport {
+
+    static final String SECRET = "c2VjcmV0LWtleS1mb3ItYmVuY2htYXJrcy1vbmx5LW5vdC1mb3ItcHJvZHVjdGlvbg==";
+
+    private BenchmarkSupport() {
+    }
+
+    static JwtUtil jwtUtil(String algorithm, boolean cacheTokens) {
+        JwtKeyRing keyRing = new JwtKeyRing(inMemoryKeys(), new TransactionTemplate(new NoTransactions()),
+                new ReplicaRouting("", Duration.ZERO, 0));
+        ReflectionTestUtils.setField(keyRing, "secret", SECRET);
+        ReflectionTestUtils.setField(keyRing, "algorithm", algorithm);
+        ReflectionTestUtils.setField(keyRing, "rotationInterval", Duration.ofDays(1));
+        ReflectionTestUtils.setField(keyRing, "rotationOverlap", Duration.ofDays(7));
+        ReflectionTestUtils.invokeMethod(keyRing, "init");
+
+        VerifiedTokenCache cache = new VerifiedTokenCache(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", cacheTokens);
+        ReflectionTestUtils.setField(cache, "maximumSize", 100_000L);
+        ReflectionTestUtils.invokeMethod(cache, "init");
+
+        JwtUtil jwtUtil = new JwtUtil(cache, keyRing);
+        ReflectionTestUtils.setField(jwtUtil, "accessTokenExpiration", 900_000L);
+        ReflectionTestUtils.setField(jwtUtil, "refreshTokenExpiration", 604_800_000L);
+        ReflectionTestUtils.invokeMethod(jwtUtil, "init");
+        return jwtUtil;
+    }
+
+    // the few JwtSigningKeyRepository methods JwtKeyRing calls, over a list
+    private static JwtSigningKeyRepository inMemoryKeys() {
+        List<JwtSigningKey> rows = new CopyOnWriteArrayList<>();
+        return (JwtSigningKeyRepository) Proxy.newProxyInstance(JwtSigningKeyRepository.class.getClassLoader(),
+                new Class<?>[]{JwtSigningKeyRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findUnretired" -> rows.stream()
+                            .filter(k -> k.getRetiresAt() == null || k.getRetiresAt().isAfter((Instant) args[0]))
+                            .toList();
+                    case "save" -> {
+                        rows.add((JwtSigningKey) args[0]);
+                        yield args[0];
+                    }
+                    case "retire" -> retire(rows, k -> k.getKid().equals(args[0]), (Instant) args[1]);
+                    case "retireAll" -> retire(rows, k -> true, (Instant) args[0]);
+                    case "deleteRetired" -> rows.removeIf(k -> k.getRetiresAt() != null
+                            && k.getRetiresAt().isBefore((Instant) args[0])) ? 1 : 0;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static int retire(List<JwtSigningKey> rows, Predicate<JwtSigningKey> match, Instant retiresAt) {
+        int retired = 0;
+        for (JwtSigningKey row : rows) {
+            if (row.getRetiresAt() == null && match.test(row)) {
+                row.setRetiresAt(retiresAt);
+                retired++;
+            }
+        }
+        return retired;
+    }
+
+    private static final class NoTransactions implements PlatformTransactionManager {
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+
+    static UserCredentials user() {
+        return new UserCredentials(42L, "Bench Mark", "bench@authify.test",
+                "$2a$10$abcdefghijklmnopqrstuuDqGpZ7mS5pqvGmWV2o8QeH3LZbVpCq", Role.USER, AuthProvider.LOCAL,
+                true, true, 0);
+    }
+}
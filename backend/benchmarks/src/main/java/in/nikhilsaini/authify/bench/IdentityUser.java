@@ -0,0 +1,32 @@
+package in.nikhilsaini.authify.bench;
+
+import in.nikhilsaini.authify.enums.AuthProvider;
+import in.nikhilsaini.authify.enums.Role;
+import jakarta.persistence.*;
+
+// The User mapping as it was with AUTO_INCREMENT ids, the baseline for UserWriteBenchmark
+@Entity
+@Table(name = "bench_identity_users")
+public class IdentityUser {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    String name;
+
+    @Column(unique = true, nullable = false)
+    String email;
+    String password;
+
+    @Enumerated(EnumType.STRING)
+    Role role;
+
+    boolean emailVerified;
+
+    @Enumerated(EnumType.STRING)
+    AuthProvider provider;
+
+    boolean accountNonLocked = true;
+    int tokenVersion;
+}
@@ -0,0 +1,84 @@
+package in.nikhilsaini.authify.bench;
+
+import in.nikhilsaini.authify.dto.UserCredentials;
+import in.nikhilsaini.authify.security.AccountStateRegistry;
+import in.nikhilsaini.authify.security.AuthenticatedUser;
+import in.nikhilsaini.authify.security.JwtAuthenticationFilter;
+import in.nikhilsaini.authify.security.JwtUtil;
+import in.nikhilsaini.authify.security.TokenRevocationList;
+import in.nikhilsaini.authify.service.CustomUserDetailsService;
+import jakarta.servlet.FilterChain;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+// Whole-filter cost of an authenticated request, with a no-op chain behind it.
+// strict mode resolves the user through a stubbed CustomUserDetailsService, so it measures the filter, not MySQL.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthenticationFilterBenchmark {
+
+    @Param({"stateless", "strict"})
+    public String authMode;
+
+    @Param({"false", "true"})
+    public boolean cacheTokens;
+
+    private JwtAuthenticationFilter filter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private FilterChain chain;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        JwtUtil jwtUtil = BenchmarkSupport.jwtUtil("HS256", cacheTokens);
+        UserCredentials user = BenchmarkSupport.user();
+
+        CustomUserDetailsService userDetailsService = Mockito.mock(CustomUserDetailsService.class);
+        Mockito.when(userDetailsService.loadUserByUsername(user.email())).thenAnswer(invocation ->
+                new AuthenticatedUser(user.email(), user.password(), true, true, 0,
+                        AuthorityUtils.createAuthorityList("ROLE_USER")));
+
+        AccountStateRegistry registry = new AccountStateRegistry();
+        ReflectionTestUtils.setField(registry, "accessTokenExpiration", 900_000L);
+
+        filter = new JwtAuthenticationFilter(jwtUtil, userDetailsService, registry,
+                Mockito.mock(TokenRevocationList.class));
+        ReflectionTestUtils.setField(filter, "authMode", authMode);
+
+        request = new MockHttpServletRequest("GET", "/api/v1/profile");
+        request.addHeader("Authorization", "Bearer " + jwtUtil.generateToken(user));
+        response = new MockHttpServletResponse();
+        chain = (req, res) -> blackhole.consume(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Benchmark
+    public void authenticate() throws Exception {
+        try {
+            filter.doFilter(request, response, chain);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package in.nikhilsaini.authify.bench;
+
+import in.nikhilsaini.authify.dto.UserCredentials;
+import in.nikhilsaini.authify.security.JwtUtil;
+import in.nikhilsaini.authify.security.VerifiedToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Token issue and verification per signing algorithm.
+// verifyCached vs verifyUncached compares the VerifiedTokenCache against a full parse + signature check.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+
+    @Param({"HS256", "RS256", "ES256", "EdDSA"})
+    public String algorithm;
+
+    private JwtUtil uncached;
+    private JwtUtil cached;
+    private UserCredentials user;
+    private String accessToken;
+    private String cachedAccessToken;
+
+    @Setup
+    public void setup() {
+        uncached = BenchmarkSupport.jwtUtil(algorithm, false);
+        cached = BenchmarkSupport.jwtUtil(algorithm, true);
+        user = BenchmarkSupport.user();
+        accessToken = uncached.generateToken(user);
+        cachedAccessToken = cached.generateToken(user);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return uncached.generateToken(user);
+    }
+
+    @Benchmark
+    public String generateRefreshToken() {
+        return uncached.generateRefreshToken(user, "bench-refresh", uncached.refreshTokenExpiry());
+    }
+
+    @Benchmark
+    public VerifiedToken verifyUncached() {
+        return uncached.verify(accessToken);
+    }
+
+    @Benchmark
+    public VerifiedToken verifyCached() {
+        return cached.verify(cachedAccessToken);
+    }
+}
@@ -0,0 +1,129 @@
+package in.nikhilsaini.authify.bench;
+
+import in.nikhilsaini.authify.dto.UserCredentials;
+import in.nikhilsaini.authify.entity.User;
+import in.nikhilsaini.authify.enums.AuthProvider;
+import in.nikhilsaini.authify.enums.Role;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// The user lookup of a login against in-memory H2: ENTITY = the whole User loaded into a persistence context
+// in a transaction, as UserRepository.findByEmail did it, UserCache copy included; PROJECTION = the
+// UserCredentials constructor query that login, refresh and authentication use now. The users carry stale OTP
+// and reset columns like old rows do. Column bytes per lookup are printed at the end of each run; run with
+// -prof gc for the allocation.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoginLookupBenchmark {
+
+    public enum Lookup { ENTITY, PROJECTION }
+
+    private static final int USERS = 1_000;
+
+    private static final String CREDENTIALS = "select new in.nikhilsaini.authify.dto.UserCredentials(u.id, u.name,"
+            + " u.email, u.password, u.role, u.provider, u.emailVerified, u.accountNonLocked, u.tokenVersion)"
+            + " from User u where u.email = :email";
+
+    @Param({"ENTITY", "PROJECTION"})
+    public Lookup lookup;
+
+    private StandardServiceRegistry registry;
+    private SessionFactory sessionFactory;
+    private int next;
+    private long bytesFetched;
+    private long operations;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        registry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.JAKARTA_NON_JTA_DATASOURCE,
+                        new RoundTripCountingDataSource("login-" + lookup + "-" + System.nanoTime()))
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, "create")
+                .applySetting(AvailableSettings.STATEMENT_BATCH_SIZE, 50)
+                .build();
+        sessionFactory = new MetadataSources(registry)
+                .addAnnotatedClass(User.class)
+                .buildMetadata()
+                .buildSessionFactory();
+
+        sessionFactory.inTransaction(session -> {
+            for (int i = 0; i < USERS; i++) {
+                session.persist(user(email(i)));
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void report(BenchmarkParams params) {
+        System.out.printf("%n%s lookup=%s: %.0f column bytes/op%n",
+                params.getBenchmark(), lookup, (double) bytesFetched / operations);
+        sessionFactory.close();
+        StandardServiceRegistryBuilder.destroy(registry);
+    }
+
+    @Benchmark
+    public Object findForLogin() {
+        long before = RoundTripCountingDataSource.bytesFetched();
+        String email = email(next++ % USERS);
+        Object found;
+        if (lookup == Lookup.ENTITY) {
+            User user = sessionFactory.fromTransaction(session -> session
+                    .createSelectionQuery("from User where email = :email", User.class)
+                    .setParameter("email", email).getSingleResult());
+            found = user.toBuilder().build();
+        } else {
+            found = sessionFactory.fromTransaction(session -> session
+                    .createSelectionQuery(CREDENTIALS, UserCredentials.class)
+                    .setParameter("email", email).getSingleResult());
+        }
+        bytesFetched += RoundTripCountingDataSource.bytesFetched() - before;
+        operations++;
+        return found;
+    }
+
+    private static String email(int i) {
+        return "user-" + i + "@authify.test";
+    }
+
+    private static User user(String email) {
+        LocalDateTime past = LocalDateTime.now().minusDays(30);
+        return User.builder()
+                .name("Bench Mark")
+                .email(email)
+                .password("{bcrypt}$2a$10$abcdefghijklmnopqrstuuDqGpZ7mS5pqvGmWV2o8QeH3LZbVpCq")
+                .role(Role.USER)
+                .provider(AuthProvider.LOCAL)
+                .emailVerified(true)
+                .accountNonLocked(true)
+                .otp("123456")
+                .otpGeneratedAt(past)
+                .otpExpiry(past.plusMinutes(10))
+                .resetOtp("654321")
+                .resetOtpExpiry(past.plusMinutes(15))
+                .build();
+    }
+}
@@ -0,0 +1,156 @@
+package in.nikhilsaini.authify.bench;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.logging.Logger;
+
+// In-memory H2 behind a proxy that counts, per thread, the JDBC calls that would each be one network round trip
+// to MySQL: statement executions (a whole executeBatch counts once), commits, rollbacks and autocommit switches.
+// Also adds up the size of every column value read from a result set, roughly what MySQL sends for it.
+final class RoundTripCountingDataSource implements DataSource {
+
+    private static final ThreadLocal<long[]> ROUND_TRIPS = ThreadLocal.withInitial(() -> new long[1]);
+    private static final ThreadLocal<long[]> BYTES_FETCHED = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final JdbcDataSource target = new JdbcDataSource();
+
+    RoundTripCountingDataSource(String name) {
+        target.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        target.setUser("sa");
+    }
+
+    // round trips made by the calling thread so far
+    static long roundTrips() {
+        return ROUND_TRIPS.get()[0];
+    }
+
+    // column bytes read by the calling thread so far
+    static long bytesFetched() {
+        return BYTES_FETCHED.get()[0];
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(target.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(target.getConnection(username, password));
+    }
+
+    private static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "commit", "rollback" -> count();
+                        case "setAutoCommit" -> {
+                            if ((Boolean) args[0] != connection.getAutoCommit()) {
+                                count();
+                            }
+                        }
+                        default -> {
+                        }
+                    }
+                    Object result = invoke(connection, method, args);
+                    return result instanceof Statement statement ? wrap(statement) : result;
+                });
+    }
+
+    private static Statement wrap(Statement statement) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getName().startsWith("execute")) {
+                count();
+            }
+            Object result = invoke(statement, method, args);
+            return result instanceof ResultSet resultSet ? wrap(resultSet) : result;
+        };
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                statement.getClass().getInterfaces(), handler);
+    }
+
+    private static ResultSet wrap(ResultSet resultSet) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    Object value = invoke(resultSet, method, args);
+                    // getString(1), getObject("email", String.class), ...
+                    if (method.getName().startsWith("get") && args != null
+                            && (args[0] instanceof Integer || args[0] instanceof String)) {
+                        BYTES_FETCHED.get()[0] += size(value);
+                    }
+                    return value;
+                });
+    }
+
+    private static long size(Object value) {
+        if (value == null || value instanceof Boolean) {
+            return 1;
+        }
+        if (value instanceof String string) {
+            return string.getBytes(StandardCharsets.UTF_8).length;
+        }
+        if (value instanceof byte[] bytes) {
+            return bytes.length;
+        }
+        if (value instanceof Integer) {
+            return 4;
+        }
+        return 8;   // BIGINT, DATETIME(6)
+    }
+
+    private static Object invoke(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void count() {
+        ROUND_TRIPS.get()[0]++;
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> type) throws SQLException {
+        throw new SQLException("Not a wrapper");
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> type) {
+        return false;
+    }
+}
@@ -0,0 +1,68 @@
+package in.nikhilsaini.authify.bench;
+
+import in.nikhilsaini.authify.datasource.ReplicaRouting;
+import in.nikhilsaini.authify.repository.TokenRevocationRepository;
+import in.nikhilsaini.authify.security.TokenRevocationList;
+import in.nikhilsaini.authify.security.VerifiedToken;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+// Cost of the denylist check the filter does on every request
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenRevocationBenchmark {
+
+    @Param({"0", "100000"})
+    public int revokedTokens;
+
+    private TokenRevocationList revocationList;
+    private VerifiedToken liveToken;
+    private VerifiedToken revokedToken;
+
+    @Setup
+    public void setup() {
+        revocationList = new TokenRevocationList(Mockito.mock(TokenRevocationRepository.class),
+                Mockito.mock(TransactionTemplate.class), new ReplicaRouting("", Duration.ZERO, 0));
+        ReflectionTestUtils.setField(revocationList, "bucketWidth", Duration.ofHours(1));
+        ReflectionTestUtils.setField(revocationList, "expectedPerBucket", 10_000L);
+        ReflectionTestUtils.setField(revocationList, "refreshTokenExpiration", 604_800_000L);
+
+        Instant expiresAt = Instant.now().plus(Duration.ofMinutes(15));
+        for (int i = 0; i < revokedTokens; i++) {
+            revocationList.revoke("revoked-" + i, expiresAt.plusSeconds(i % 3600));
+        }
+        liveToken = new VerifiedToken("bench@authify.test", "USER", null, "live-token-id", Instant.now(), expiresAt);
+        revokedToken = new VerifiedToken("bench@authify.test", "USER", null,
+                revokedTokens > 0 ? "revoked-0" : "none", Instant.now(), expiresAt);
+    }
+
+    @Benchmark
+    public boolean liveToken() {
+        return revocationList.isRevoked(liveToken);
+    }
+
+    @Benchmark
+    public boolean revokedToken() {
+        return revocationList.isRevoked(revokedToken);
+    }
+}
@@ -0,0 +1,198 @@
+package in.nikhilsaini.authify.bench;
+
+import in.nikhilsaini.authify.entity.TempUser;
+import in.nikhilsaini.authify.entity.TokenRevocation;
+import in.nikhilsaini.authify.entity.User;
+import in.nikhilsaini.authify.enums.AuthProvider;
+import in.nikhilsaini.authify.enums.RevocationType;
+import in.nikhilsaini.authify.enums.Role;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// DB writes of verify-otp, reset-password and a 50-user import against in-memory H2, old write path vs new:
+// BEFORE = AUTO_INCREMENT ids and one transaction per repository call, AFTER = pooled table ids, one transaction
+// per flow and JDBC batching. H2 makes the timings optimistic; the round trips per operation, printed at the end
+// of each run, are what carries over to MySQL.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserWriteBenchmark {
+
+    public enum WritePath { BEFORE, AFTER }
+
+    private static final int IMPORT_SIZE = 50;
+
+    @Param({"BEFORE", "AFTER"})
+    public WritePath writePath;
+
+    private StandardServiceRegistry registry;
+    private SessionFactory sessionFactory;
+    private long sequence;
+    private String pendingEmail;
+    private long roundTrips;
+    private long operations;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        registry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.JAKARTA_NON_JTA_DATASOURCE,
+                        new RoundTripCountingDataSource("users-" + writePath + "-" + System.nanoTime()))
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, "create")
+                .applySetting(AvailableSettings.STATEMENT_BATCH_SIZE, 50)
+                .applySetting(AvailableSettings.ORDER_INSERTS, true)
+                .applySetting(AvailableSettings.ORDER_UPDATES, true)
+                .build();
+        sessionFactory = new MetadataSources(registry)
+                .addAnnotatedClasses(User.class, TempUser.class, TokenRevocation.class, IdentityUser.class)
+                .buildMetadata()
+                .buildSessionFactory();
+
+        sessionFactory.inTransaction(session -> {
+            session.persist(user("reset@authify.test"));
+            session.persist(identityUser("reset@authify.test"));
+        });
+    }
+
+    @Setup(Level.Invocation)
+    public void pendingRegistration() {
+        pendingEmail = "pending-" + (++sequence) + "@authify.test";
+        TempUser temp = TempUser.builder()
+                .email(pendingEmail)
+                .name("Bench Mark")
+                .password("{bcrypt}$2a$10$abcdefghijklmnopqrstuuDqGpZ7mS5pqvGmWV2o8QeH3LZbVpCq")
+                .otpExpiry(LocalDateTime.now().plusHours(24))
+                .build();
+        sessionFactory.inTransaction(session -> session.persist(temp));
+    }
+
+    @TearDown(Level.Trial)
+    public void report(BenchmarkParams params) {
+        System.out.printf("%n%s writePath=%s: %.2f round trips/op%n",
+                params.getBenchmark(), writePath, (double) roundTrips / operations);
+        sessionFactory.close();
+        StandardServiceRegistryBuilder.destroy(registry);
+    }
+
+    // load the pending registration, insert the user, delete the registration
+    @Benchmark
+    public void verifyOtp() {
+        long before = RoundTripCountingDataSource.roundTrips();
+        String email = pendingEmail;
+        if (writePath == WritePath.BEFORE) {
+            TempUser temp = sessionFactory.fromTransaction(session -> session.find(TempUser.class, email));
+            IdentityUser user = identityUser(temp.getEmail());
+            sessionFactory.inTransaction(session -> session.persist(user));
+            // SimpleJpaRepository.delete: find, then remove
+            sessionFactory.inTransaction(session -> session.remove(session.find(TempUser.class, email)));
+        } else {
+            sessionFactory.inTransaction(session -> {
+                TempUser temp = session.find(TempUser.class, email);
+                session.persist(user(temp.getEmail()));
+                session.remove(temp);
+            });
+        }
+        record(before);
+    }
+
+    // load the user, store the new hash and token version, append the revocation entry
+    @Benchmark
+    public void resetPassword() {
+        long before = RoundTripCountingDataSource.roundTrips();
+        if (writePath == WritePath.BEFORE) {
+            IdentityUser user = sessionFactory.fromTransaction(session -> session
+                    .createSelectionQuery("from IdentityUser where email = :email", IdentityUser.class)
+                    .setParameter("email", "reset@authify.test").getSingleResult());
+            user.password = "{bcrypt}new-hash-" + sequence;
+            user.tokenVersion++;
+            // SimpleJpaRepository.save on a detached entity: merge
+            sessionFactory.inTransaction(session -> session.merge(user));
+            sessionFactory.inTransaction(session -> session.persist(revocation(user.email)));
+        } else {
+            sessionFactory.inTransaction(session -> {
+                User user = session.createSelectionQuery("from User where email = :email", User.class)
+                        .setParameter("email", "reset@authify.test").getSingleResult();
+                user.setPassword("{bcrypt}new-hash-" + sequence);
+                user.setTokenVersion(user.getTokenVersion() + 1);
+                session.persist(revocation(user.getEmail()));
+            });
+        }
+        record(before);
+    }
+
+    // IMPORT_SIZE new users in one transaction
+    @Benchmark
+    public void importUsers() {
+        long before = RoundTripCountingDataSource.roundTrips();
+        long batch = sequence;
+        sessionFactory.inTransaction(session -> {
+            for (int i = 0; i < IMPORT_SIZE; i++) {
+                String email = "import-" + batch + "-" + i + "@authify.test";
+                session.persist(writePath == WritePath.BEFORE ? identityUser(email) : user(email));
+            }
+        });
+        record(before);
+    }
+
+    private void record(long before) {
+        roundTrips += RoundTripCountingDataSource.roundTrips() - before;
+        operations++;
+    }
+
+    private static User user(String email) {
+        return User.builder()
+                .name("Bench Mark")
+                .email(email)
+                .password("{bcrypt}$2a$10$abcdefghijklmnopqrstuuDqGpZ7mS5pqvGmWV2o8QeH3LZbVpCq")
+                .role(Role.USER)
+                .provider(AuthProvider.LOCAL)
+                .emailVerified(true)
+                .accountNonLocked(true)
+                .build();
+    }
+
+    private static IdentityUser identityUser(String email) {
+        IdentityUser user = new IdentityUser();
+        user.name = "Bench Mark";
+        user.email = email;
+        user.password = "{bcrypt}$2a$10$abcdefghijklmnopqrstuuDqGpZ7mS5pqvGmWV2o8QeH3LZbVpCq";
+        user.role = Role.USER;
+        user.provider = AuthProvider.LOCAL;
+        user.emailVerified = true;
+        return user;
+    }
+
+    private static TokenRevocation revocation(String email) {
+        Instant now = Instant.now();
+        return TokenRevocation.builder()
+                .type(RevocationType.SUBJECT)
+                .value(email)
+                .notBefore(now)
+                .expiresAt(now.plus(Duration.ofDays(7)))
+                .build();
+    }
+}
@@ -2,10 +2,10 @@ package in.nikhilsaini.authify;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 
-@EnableAsync
+@EnableScheduling
 @SpringBootApplication
 public class AuthifyApplication {
 
@@ -0,0 +1,180 @@
+package in.nikhilsaini.authify.cache;
+
+import in.nikhilsaini.authify.datasource.ReplicaRouting;
+import in.nikhilsaini.authify.repository.UserRepository;
+import in.nikhilsaini.authify.shard.UserShard;
+import in.nikhilsaini.authify.shard.UserShards;
+import in.nikhilsaini.authify.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+
+// Bloom filter of every email in tbl_users, so lookups for emails that were never registered (typos, credential
+// stuffing, registration of a new address) are answered without a DB query.
+// true means "ask the DB" (about auth.emailFilter.falsePositiveRate of unknown emails also get true). Until the
+// first load has finished everything is "ask the DB".
+// false is definite only for users created on this node, and for users created elsewhere up to the last tail: a
+// user created on another node is missing here for up to auth.emailFilter.refreshInterval (plus the commit).
+// That is fine for login with sessions routed to the node a user registered on, or when a login that fails
+// within seconds of registering elsewhere is acceptable; paths where a wrong "no" does damage (register) must
+// not skip the DB on it.
+// Loaded in the background by walking the primary key in pages of id + email only. New users are added by the
+// code that inserts them, and every auth.emailFilter.refreshInterval the filter picks up users created since
+// shortly before the newest one seen, which covers users created on other nodes. That goes by createdAt, not
+// id: ids come from per-node pooled blocks, so a node can commit a low id long after higher ones. The filter is
+// rebuilt from scratch every auth.emailFilter.rebuildInterval, resized for the current user count, which also
+// forgets deleted users. With sharding every shard is walked, each with its own cursor (ids are per shard).
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class KnownEmails {
+
+    private static final int PAGE_SIZE = 10_000;
+    // rows become visible at commit, well after createdAt, and node clocks differ a little; a tail re-reads
+    // this far back from the newest createdAt seen
+    private static final Duration TAIL_LOOK_BACK = Duration.ofMinutes(1);
+
+    private final UserShards userShards;
+    private final MeterRegistry meterRegistry;
+    private final ReplicaRouting replicaRouting;
+
+    @Value("${auth.emailFilter.enabled:true}")
+    private boolean enabled;
+
+    // minimum sizing; the filter is sized for twice the current user count if that is larger
+    @Value("${auth.emailFilter.expectedUsers:1000000}")
+    private long expectedUsers;
+
+    @Value("${auth.emailFilter.falsePositiveRate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${auth.emailFilter.rebuildInterval:6h}")
+    private Duration rebuildInterval;
+
+    private volatile BloomFilter filter;      // null until loaded
+    private volatile BloomFilter rebuilding;  // receives new emails while a rebuild is walking the table
+    private volatile Instant lastSeenCreatedAt;
+    private long builtAt;
+    private Counter skipped;
+
+    @PostConstruct
+    void init() {
+        skipped = Counter.builder("auth.emailfilter.skipped").register(meterRegistry);
+        Gauge.builder("auth.emailfilter.bytes", this, k -> k.filter == null ? 0 : k.filter.sizeInBytes())
+                .register(meterRegistry);
+    }
+
+    // false = no user with this email, as far as this node has seen (see above)
+    public boolean mightExist(String email) {
+        BloomFilter current = filter;
+        if (!enabled || current == null || email == null) {
+            return true;
+        }
+        if (current.mightContain(key(email))) {
+            return true;
+        }
+        skipped.increment();
+        return false;
+    }
+
+    // call after inserting a user
+    public void add(String email) {
+        String key = key(email);
+        BloomFilter current = filter;
+        BloomFilter next = rebuilding;
+        if (current != null) {
+            current.put(key);
+        }
+        if (next != null) {
+            next.put(key);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${auth.emailFilter.refreshInterval:5s}")
+    void refresh() {
+        if (!enabled) {
+            return;
+        }
+        if (filter == null || System.nanoTime() - builtAt >= rebuildInterval.toNanos()) {
+            rebuild();
+        } else {
+            // a rebuild may read a replica, the tail reads the primary so that replication lag can't hide new users
+            lastSeenCreatedAt = replicaRouting.onPrimary(
+                    () -> tail(filter, lastSeenCreatedAt.minus(TAIL_LOOK_BACK), lastSeenCreatedAt));
+        }
+    }
+
+    private void rebuild() {
+        long started = System.nanoTime();
+        List<UserShard> shards = userShards.all();
+        // ids are per shard, their sum is an upper bound of the user count like a single table's max id
+        long maxId = 0;
+        for (UserShard shard : shards) {
+            maxId += shard.users().findMaxId();
+        }
+        BloomFilter next = new BloomFilter(Math.max(expectedUsers, maxId * 2), falsePositiveRate);
+        rebuilding = next;
+        Instant newest = Instant.EPOCH;
+        long loaded = 0;
+        for (UserShard shard : shards) {
+            long afterId = 0;
+            List<UserRepository.IdAndEmail> page;
+            do {
+                page = shard.users().findEmailsAfter(afterId, PageRequest.of(0, PAGE_SIZE));
+                for (UserRepository.IdAndEmail user : page) {
+                    next.put(key(user.getEmail()));
+                    afterId = user.getId();
+                    newest = newer(newest, user.getCreatedAt());
+                }
+                loaded += page.size();
+            } while (page.size() == PAGE_SIZE);
+        }
+        filter = next;
+        rebuilding = null;
+        lastSeenCreatedAt = newest;
+        builtAt = System.nanoTime();
+        log.info("Loaded known-email filter with {} users in {} ms ({} KiB)", loaded,
+                (builtAt - started) / 1_000_000, next.sizeInBytes() / 1024);
+    }
+
+    // adds every user created at or after `since`, returns the newest createdAt seen (at least `newest`)
+    private Instant tail(BloomFilter target, Instant since, Instant newest) {
+        for (UserShard shard : userShards.all()) {
+            Timestamp afterCreatedAt = Timestamp.from(since);
+            long afterId = 0;
+            List<UserRepository.IdAndEmail> page;
+            do {
+                page = shard.users().findEmailsCreatedAfter(afterCreatedAt, afterId, PageRequest.of(0, PAGE_SIZE));
+                for (UserRepository.IdAndEmail user : page) {
+                    target.put(key(user.getEmail()));
+                    afterCreatedAt = user.getCreatedAt();
+                    afterId = user.getId();
+                    newest = newer(newest, user.getCreatedAt());
+                }
+            } while (page.size() == PAGE_SIZE);
+        }
+        return newest;
+    }
+
+    private static Instant newer(Instant newest, Timestamp createdAt) {
+        return createdAt != null && createdAt.toInstant().isAfter(newest) ? createdAt.toInstant() : newest;
+    }
+
+    // MySQL compares emails case-insensitively
+    private static String key(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+}
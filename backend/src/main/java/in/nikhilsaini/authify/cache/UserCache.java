@@ -0,0 +1,83 @@
+package in.nikhilsaini.authify.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import in.nikhilsaini.authify.datasource.ReplicaRouting;
+import in.nikhilsaini.authify.dto.UserCredentials;
+import in.nikhilsaini.authify.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Optional;
+
+// In-process cache of users by email in front of UserRepository.findCredentialsByEmail.
+// Holds the immutable UserCredentials projection, so entries are handed out as they are.
+// Invalidation is local to this node; expireAfterWrite bounds how stale another node's change can be.
+@Component
+@RequiredArgsConstructor
+public class UserCache {
+
+    private final UserRepository userRepository;
+    private final KnownEmails knownEmails;
+    private final ReplicaRouting replicaRouting;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${auth.cache.users.enabled:true}")
+    private boolean enabled;
+
+    @Value("${auth.cache.users.maximumSize:10000}")
+    private long maximumSize;
+
+    @Value("${auth.cache.users.expireAfterWrite:10m}")
+    private Duration expireAfterWrite;
+
+    // refresh-ahead: entries older than this are reloaded in the background on the next read, 0 disables it
+    @Value("${auth.cache.users.refreshAfterWrite:0}")
+    private Duration refreshAfterWrite;
+
+    private LoadingCache<String, UserCredentials> cache;
+
+    @PostConstruct
+    void init() {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats();
+        if (!refreshAfterWrite.isZero()) {
+            builder.refreshAfterWrite(refreshAfterWrite);
+        }
+        // unknown emails load as null and are not cached
+        cache = builder.build(key -> replicaRouting.readFor(key, () -> userRepository.findCredentialsByEmail(key).orElse(null)));
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "users");
+    }
+
+    public Optional<UserCredentials> findByEmail(String email) {
+        if (!knownEmails.mightExist(email)) {
+            return Optional.empty();
+        }
+        if (!enabled) {
+            return replicaRouting.readFor(email, () -> userRepository.findCredentialsByEmail(email));
+        }
+        return Optional.ofNullable(cache.get(key(email)));
+    }
+
+    // call after every change to password, lock, verification or role
+    public void invalidate(String email) {
+        if (email != null) {
+            // the reload has to see the change, which may not have reached the replicas yet
+            replicaRouting.written(email);
+            cache.invalidate(key(email));
+        }
+    }
+
+    // MySQL compares emails case-insensitively, so the cache has to as well
+    private static String key(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+}
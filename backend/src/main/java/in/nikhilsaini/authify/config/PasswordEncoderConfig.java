@@ -0,0 +1,114 @@
+package in.nikhilsaini.authify.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+// Password hashes are stored as "{id}hash" and verified by whichever encoder the prefix names, so the
+// algorithm and cost can change without breaking existing hashes. Hashes from before the prefix existed
+// are plain BCrypt and still verify.
+// New hashes use auth.password.encoder. Its cost is calibrated at startup so one hash takes about
+// auth.password.targetHashTime on this hardware, never below the floors below. Hashes with an older
+// algorithm or lower cost are re-hashed on the next successful login (AuthServiceImpl.login).
+@Slf4j
+@Configuration
+public class PasswordEncoderConfig {
+
+    // OWASP minimums; calibration only ever raises the cost above these
+    private static final int BCRYPT_MIN_STRENGTH = 10;
+    private static final int BCRYPT_MAX_STRENGTH = 16;
+    private static final int ARGON2_MIN_ITERATIONS = 2;
+    private static final int ARGON2_MAX_ITERATIONS = 32;
+    private static final int ARGON2_MEMORY_KIB = 19_456;
+
+    private static final String CALIBRATION_PASSWORD = "calibration-password";
+
+    // bcrypt | argon2 | pbkdf2
+    @Value("${auth.password.encoder:bcrypt}")
+    private String encoderId;
+
+    @Value("${auth.password.targetHashTime:250ms}")
+    private Duration targetHashTime;
+
+    // fixed cost for the active encoder, 0 = calibrate at startup
+    @Value("${auth.password.cost:0}")
+    private int cost;
+
+    // PBKDF2 hashes don't record their iteration count, so it is configured rather than calibrated
+    // and must not change once pbkdf2 hashes exist
+    @Value("${auth.password.pbkdf2.iterations:600000}")
+    private int pbkdf2Iterations;
+
+    @Bean
+    public PasswordEncoder passwordEncoder() {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder();
+        Argon2PasswordEncoder argon2 = argon2(ARGON2_MIN_ITERATIONS);
+        switch (encoderId) {
+            case "bcrypt" -> {
+                int strength = cost > 0 ? cost
+                        : calibrate(BCRYPT_MIN_STRENGTH, BCRYPT_MAX_STRENGTH, BCryptPasswordEncoder::new, true);
+                bcrypt = new BCryptPasswordEncoder(strength);
+                log.info("Password hashing: bcrypt, strength {}", strength);
+            }
+            case "argon2" -> {
+                int iterations = cost > 0 ? cost
+                        : calibrate(ARGON2_MIN_ITERATIONS, ARGON2_MAX_ITERATIONS, PasswordEncoderConfig::argon2, false);
+                argon2 = argon2(iterations);
+                log.info("Password hashing: argon2id, {} KiB, {} iterations", ARGON2_MEMORY_KIB, iterations);
+            }
+            case "pbkdf2" -> log.info("Password hashing: pbkdf2-sha256, {} iterations", pbkdf2Iterations);
+            default -> throw new IllegalStateException("Unsupported auth.password.encoder: " + encoderId);
+        }
+
+        Pbkdf2PasswordEncoder pbkdf2 = new Pbkdf2PasswordEncoder("", 16, pbkdf2Iterations,
+                Pbkdf2PasswordEncoder.SecretKeyFactoryAlgorithm.PBKDF2WithHmacSHA256);
+
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(encoderId,
+                Map.of("bcrypt", bcrypt, "argon2", argon2, "pbkdf2", pbkdf2));
+        // hashes stored before the {id} prefix was introduced
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return encoder;
+    }
+
+    private static Argon2PasswordEncoder argon2(int iterations) {
+        return new Argon2PasswordEncoder(16, 32, 1, ARGON2_MEMORY_KIB, iterations);
+    }
+
+    // Times one hash at the minimum cost and extrapolates: each bcrypt strength step doubles the work,
+    // argon2 work grows linearly with iterations. Steps back down if the pick overshoots the target.
+    private int calibrate(int min, int max, IntFunction<PasswordEncoder> encoderFor, boolean exponential) {
+        long targetNanos = targetHashTime.toNanos();
+        long baseNanos = time(encoderFor.apply(min));
+        double ratio = (double) targetNanos / Math.max(baseNanos, 1);
+        int chosen = exponential
+                ? min + (int) Math.floor(Math.log(ratio) / Math.log(2))
+                : (int) Math.floor(min * ratio);
+        chosen = Math.max(min, Math.min(max, chosen));
+        while (chosen > min && time(encoderFor.apply(chosen)) > targetNanos) {
+            chosen--;
+        }
+        return chosen;
+    }
+
+    // best of three after a warm-up, to keep JIT and GC noise out of the estimate
+    private static long time(PasswordEncoder encoder) {
+        encoder.encode(CALIBRATION_PASSWORD);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long started = System.nanoTime();
+            encoder.encode(CALIBRATION_PASSWORD);
+            best = Math.min(best, System.nanoTime() - started);
+        }
+        return best;
+    }
+}
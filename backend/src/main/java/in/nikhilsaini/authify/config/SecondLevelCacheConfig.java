@@ -0,0 +1,104 @@
+package in.nikhilsaini.authify.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import in.nikhilsaini.authify.entity.User;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.function.ToDoubleFunction;
+
+// Only with auth.cache.l2.enabled: Hibernate's second-level cache for User, by id ("users") and by email, its
+// natural id ("users-by-email"), on a Caffeine JCache. The alternative to UserCache for caching at the ORM layer,
+// so turn auth.cache.users off with it; both at once only adds a copy.
+// Hibernate keeps the regions up to date on its own: inserts and updates through the EntityManager refresh the
+// entry on commit, bulk updates (UserRepository.updatePassword, the OTP purge) drop both regions. Local to this
+// node like UserCache, another node's changes show up after the region's TTL at most. Lookups that feed a write
+// use UserRepository.findByEmail, a query, which always reads the database.
+// Hit / miss / put counts and the hit ratio per region are under /actuator/metrics/auth.cache.l2.*
+@Configuration
+@ConditionalOnProperty(name = "auth.cache.l2.enabled", havingValue = "true")
+public class SecondLevelCacheConfig {
+
+    @Value("${auth.cache.l2.users.maximumSize:10000}")
+    private long usersMaximumSize;
+
+    @Value("${auth.cache.l2.users.expireAfterWrite:10m}")
+    private Duration usersExpireAfterWrite;
+
+    @Value("${auth.cache.l2.usersByEmail.maximumSize:10000}")
+    private long usersByEmailMaximumSize;
+
+    // email -> id never changes, only bounds how long a mapping nobody asks for is kept
+    @Value("${auth.cache.l2.usersByEmail.expireAfterWrite:1h}")
+    private Duration usersByEmailExpireAfterWrite;
+
+    @Bean(destroyMethod = "close")
+    public CacheManager secondLevelCacheManager() {
+        CacheManager cacheManager = new CaffeineCachingProvider().getCacheManager();
+        cacheManager.createCache(User.CACHE_REGION, region(usersMaximumSize, usersExpireAfterWrite));
+        cacheManager.createCache(User.NATURAL_ID_CACHE_REGION, region(usersByEmailMaximumSize, usersByEmailExpireAfterWrite));
+        return cacheManager;
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(long maximumSize, Duration expireAfterWrite) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(expireAfterWrite.toNanos()));
+        return configuration;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCache(CacheManager secondLevelCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+            // every region is created above, a missing one is a mapping mistake
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+            // for the hit ratios below
+            properties.put(AvailableSettings.GENERATE_STATISTICS, true);
+        };
+    }
+
+    @Bean
+    public MeterBinder secondLevelCacheMetrics(EntityManagerFactory entityManagerFactory) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        return registry -> {
+            for (String region : List.of(User.CACHE_REGION, User.NATURAL_ID_CACHE_REGION)) {
+                ToDoubleFunction<Statistics> hits = s -> s.getDomainDataRegionStatistics(region).getHitCount();
+                ToDoubleFunction<Statistics> misses = s -> s.getDomainDataRegionStatistics(region).getMissCount();
+                FunctionCounter.builder("auth.cache.l2.gets", statistics, hits)
+                        .tags("region", region, "result", "hit").register(registry);
+                FunctionCounter.builder("auth.cache.l2.gets", statistics, misses)
+                        .tags("region", region, "result", "miss").register(registry);
+                FunctionCounter.builder("auth.cache.l2.puts", statistics,
+                                s -> s.getDomainDataRegionStatistics(region).getPutCount())
+                        .tag("region", region).register(registry);
+                Gauge.builder("auth.cache.l2.hit.ratio", statistics, s -> hitRatio(s.getDomainDataRegionStatistics(region)))
+                        .tag("region", region).register(registry);
+            }
+        };
+    }
+
+    private static double hitRatio(CacheRegionStatistics region) {
+        long lookups = region.getHitCount() + region.getMissCount();
+        return lookups == 0 ? 0 : (double) region.getHitCount() / lookups;
+    }
+}
@@ -0,0 +1,248 @@
+package in.nikhilsaini.authify.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import in.nikhilsaini.authify.entity.TempUser;
+import in.nikhilsaini.authify.entity.User;
+import in.nikhilsaini.authify.repository.TempUserRepository;
+import in.nikhilsaini.authify.repository.UserRepository;
+import in.nikhilsaini.authify.repository.UserRepositoryCustomImpl;
+import in.nikhilsaini.authify.shard.EmailRoutedRepository;
+import in.nikhilsaini.authify.shard.Resharder;
+import in.nikhilsaini.authify.shard.UserShard;
+import in.nikhilsaini.authify.shard.UserShards;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.flywaydb.core.Flyway;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.flyway.FlywayProperties;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactoryBean;
+import org.springframework.data.querydsl.EntityPathResolver;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.persistenceunit.PersistenceManagedTypes;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Where tbl_users and temp_user live (UserShards). Without auth.datasource.shards.urls: in spring.datasource
+// with everything else, as always.
+// With it, in the listed databases instead, as `name=jdbcUrl` entries; the name is what the hash ring goes by, so
+// a shard keeps it for good even if its URL changes. Each shard gets a pool, the Flyway migrations (one schema
+// everywhere, the other tables just stay empty on the shards) and a persistence unit with only User and TempUser,
+// with the repositories on top. Everything else (tokens, OTPs, outbox) stays in spring.datasource, replicas
+// included; shards have no replicas. User ids come from each shard's own tbl_id_generators and repeat across
+// shards, which is also why the second-level cache is off on them.
+// To reshard, move the current list to auth.datasource.shards.previousUrls and put the new one in urls, keeping
+// the names of the shards in both; the Resharder moves the users whose shard changed and logs when it is done.
+@Configuration
+public class UserShardsConfig {
+
+    @Bean
+    @ConditionalOnExpression("'${auth.datasource.shards.urls:}'.isBlank()")
+    public UserShards userShards(UserRepository userRepository, TempUserRepository tempUserRepository,
+                                 DataSource dataSource, EntityManagerFactory entityManagerFactory,
+                                 TransactionTemplate transactionTemplate) {
+        return UserShards.single(new UserShard("default", userRepository, tempUserRepository, dataSource,
+                entityManagerFactory, transactionTemplate));
+    }
+
+    @Bean
+    @ConditionalOnExpression("!'${auth.datasource.shards.urls:}'.isBlank()")
+    public UserShards shardedUserShards(
+            DataSourceProperties dataSourceProperties,
+            FlywayProperties flywayProperties,
+            EntityManagerFactoryBuilder entityManagerFactoryBuilder,
+            MeterRegistry meterRegistry,
+            @Value("${auth.datasource.shards.urls}") List<String> urls,
+            @Value("${auth.datasource.shards.previousUrls:}") List<String> previousUrls,
+            @Value("${auth.datasource.shards.username:}") String username,
+            @Value("${auth.datasource.shards.password:}") String password,
+            @Value("${auth.datasource.shards.poolSize:10}") int poolSize,
+            @Value("${auth.datasource.shards.virtualNodes:160}") int virtualNodes) {
+        ShardFactory factory = new ShardFactory(dataSourceProperties, flywayProperties, entityManagerFactoryBuilder,
+                meterRegistry, username, password, poolSize);
+        Map<String, String> current = entries(urls);
+        Map<String, String> previous = entries(previousUrls);
+        Map<String, UserShard> byName = new HashMap<>();
+        try {
+            for (Map.Entry<String, String> entry : current.entrySet()) {
+                byName.put(entry.getKey(), factory.shard(entry.getKey(), entry.getValue()));
+            }
+            for (Map.Entry<String, String> entry : previous.entrySet()) {
+                if (!byName.containsKey(entry.getKey())) {
+                    byName.put(entry.getKey(), factory.shard(entry.getKey(), entry.getValue()));
+                } else if (!entry.getValue().equals(current.get(entry.getKey()))) {
+                    throw new IllegalStateException("shard " + entry.getKey()
+                            + " has different URLs in auth.datasource.shards.urls and previousUrls");
+                }
+            }
+        } catch (RuntimeException e) {
+            factory.close();
+            throw e;
+        }
+        return UserShards.sharded(current.keySet().stream().map(byName::get).toList(),
+                previous.keySet().stream().map(byName::get).toList(), virtualNodes, factory.resources);
+    }
+
+    @Bean
+    @ConditionalOnExpression("!'${auth.datasource.shards.previousUrls:}'.isBlank()"
+            + " && !'${auth.datasource.shards.urls:}'.isBlank()")
+    public Resharder resharder(UserShards userShards, MeterRegistry meterRegistry) {
+        return new Resharder(userShards, meterRegistry);
+    }
+
+    // the ones everything else injects; the Spring Data beans of the shard-less setup stay around unused
+    @Bean
+    @Primary
+    @ConditionalOnExpression("!'${auth.datasource.shards.urls:}'.isBlank()")
+    public UserRepository shardedUserRepository(UserShards userShards, ObjectProvider<Resharder> resharder,
+                                                MeterRegistry meterRegistry) {
+        return EmailRoutedRepository.users(userShards, resharder.getIfAvailable(), meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnExpression("!'${auth.datasource.shards.urls:}'.isBlank()")
+    public TempUserRepository shardedTempUserRepository(UserShards userShards, ObjectProvider<Resharder> resharder,
+                                                        MeterRegistry meterRegistry) {
+        return EmailRoutedRepository.tempUsers(userShards, resharder.getIfAvailable(), meterRegistry);
+    }
+
+    // name=jdbcUrl, split at the first '=' since URLs have their own
+    private static Map<String, String> entries(List<String> urls) {
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (String entry : urls) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalStateException("shard entries are name=jdbcUrl, got " + entry.trim());
+            }
+            if (entries.put(entry.substring(0, separator).trim(), entry.substring(separator + 1).trim()) != null) {
+                throw new IllegalStateException("duplicate shard name in " + entry.trim());
+            }
+        }
+        return entries;
+    }
+
+    private static final class ShardFactory {
+
+        private static final String PERSISTENCE_UNIT = "shard-";
+
+        private final DataSourceProperties dataSourceProperties;
+        private final FlywayProperties flywayProperties;
+        private final EntityManagerFactoryBuilder entityManagerFactoryBuilder;
+        private final MeterRegistry meterRegistry;
+        private final String username;
+        private final String password;
+        private final int poolSize;
+        private final List<AutoCloseable> resources = new ArrayList<>();
+
+        ShardFactory(DataSourceProperties dataSourceProperties, FlywayProperties flywayProperties,
+                     EntityManagerFactoryBuilder entityManagerFactoryBuilder, MeterRegistry meterRegistry,
+                     String username, String password, int poolSize) {
+            this.dataSourceProperties = dataSourceProperties;
+            this.flywayProperties = flywayProperties;
+            this.entityManagerFactoryBuilder = entityManagerFactoryBuilder;
+            this.meterRegistry = meterRegistry;
+            this.username = username;
+            this.password = password;
+            this.poolSize = poolSize;
+        }
+
+        UserShard shard(String name, String url) {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("shard-" + name);
+            dataSource.setJdbcUrl(url);
+            dataSource.setDriverClassName(dataSourceProperties.determineDriverClassName());
+            dataSource.setUsername(username.isBlank() ? dataSourceProperties.determineUsername() : username);
+            dataSource.setPassword(username.isBlank() ? dataSourceProperties.determinePassword() : password);
+            dataSource.setMaximumPoolSize(poolSize);
+            dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            resources.add(dataSource);
+
+            migrate(dataSource);
+
+            LocalContainerEntityManagerFactoryBean factoryBean = entityManagerFactoryBuilder
+                    .dataSource(dataSource)
+                    .managedTypes(PersistenceManagedTypes.of(User.class.getName(), TempUser.class.getName()))
+                    .persistenceUnit(PERSISTENCE_UNIT + name)
+                    // ids repeat across shards and the regions would be shared
+                    .properties(Map.of(AvailableSettings.USE_SECOND_LEVEL_CACHE, false))
+                    .build();
+            factoryBean.afterPropertiesSet();
+            EntityManagerFactory entityManagerFactory = factoryBean.getObject();
+            resources.add(entityManagerFactory::close);
+
+            JpaTransactionManager transactionManager = new JpaTransactionManager(entityManagerFactory);
+            transactionManager.afterPropertiesSet();
+            EntityManager entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+            StaticListableBeanFactory beans = new StaticListableBeanFactory();
+            beans.addBean("transactionManager", transactionManager);
+            beans.addBean("persistenceExceptionTranslator", new HibernateJpaDialect());
+
+            UserRepository users = repository(UserRepository.class, entityManager, beans,
+                    RepositoryFragments.just(new UserRepositoryCustomImpl(entityManager)));
+            TempUserRepository tempUsers = repository(TempUserRepository.class, entityManager, beans,
+                    RepositoryFragments.empty());
+            return new UserShard(name, users, tempUsers, dataSource, entityManagerFactory,
+                    new TransactionTemplate(transactionManager));
+        }
+
+        private void migrate(DataSource dataSource) {
+            Flyway.configure()
+                    .dataSource(dataSource)
+                    .locations(flywayProperties.getLocations().toArray(String[]::new))
+                    .placeholders(flywayProperties.getPlaceholders())
+                    .baselineOnMigrate(flywayProperties.isBaselineOnMigrate())
+                    .baselineVersion(flywayProperties.getBaselineVersion())
+                    .load()
+                    .migrate();
+        }
+
+        // what @EnableJpaRepositories does for the main persistence unit, with the shard's transaction manager
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        private static <R> R repository(Class<R> type, EntityManager entityManager, StaticListableBeanFactory beans,
+                                        RepositoryFragments fragments) {
+            JpaRepositoryFactoryBean factoryBean = new JpaRepositoryFactoryBean(type);
+            factoryBean.setEntityManager(entityManager);
+            factoryBean.setBeanFactory(beans);
+            factoryBean.setTransactionManager("transactionManager");
+            factoryBean.setEntityPathResolver(beans.getBeanProvider(EntityPathResolver.class));
+            factoryBean.setRepositoryFragments(fragments);
+            factoryBean.afterPropertiesSet();
+            return type.cast(factoryBean.getObject());
+        }
+
+        // after a shard failed to start, what the ones before it opened
+        void close() {
+            for (AutoCloseable resource : resources) {
+                try {
+                    resource.close();
+                } catch (Exception ignored) {
+                    // the startup failure is the one to report
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package in.nikhilsaini.authify.controller;
+
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import in.nikhilsaini.authify.dto.AuthResponse;
+import in.nikhilsaini.authify.enums.TransferFormat;
+import in.nikhilsaini.authify.service.AuthService;
+import in.nikhilsaini.authify.transfer.UserExporter;
+import in.nikhilsaini.authify.transfer.UserImporter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+@RestController
+@RequestMapping("/admin")
+@RequiredArgsConstructor
+public class AdminController {
+
+    private final AuthService authService;
+    private final UserImporter userImporter;
+    private final UserExporter userExporter;
+    private final ObjectMapper objectMapper;
+
+    // Lock account (invalidates every token issued before)
+    @PostMapping("/users/lock")
+    public ResponseEntity<AuthResponse> lock(@RequestParam String email){
+        return ResponseEntity.ok(authService.updateAccountLock(email, true));
+    }
+
+    // Revoke every token issued to the user so far
+    @PostMapping("/users/revoke-tokens")
+    public ResponseEntity<AuthResponse> revokeTokens(@RequestParam String email){
+        return ResponseEntity.ok(authService.revokeAllTokens(email));
+    }
+
+    // Unlock account
+    @PostMapping("/users/unlock")
+    public ResponseEntity<AuthResponse> unlock(@RequestParam String email){
+        return ResponseEntity.ok(authService.updateAccountLock(email, false));
+    }
+
+    // Bulk import, body is NDJSON or CSV with password hashes (see UserImporter).
+    // Answers with one NDJSON progress line per chunk, the last one has "done": true
+    @PostMapping("/users/import")
+    public void importUsers(@RequestParam(defaultValue = "ndjson") String format,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        TransferFormat transferFormat = TransferFormat.of(format);
+        // the container would have parsed a form body into parameters already
+        if (request.getContentType() != null && request.getContentType().startsWith(MediaType.APPLICATION_FORM_URLENCODED_VALUE)) {
+            throw new IllegalArgumentException("Send the file as " + transferFormat.contentType() + ", not as a form");
+        }
+        response.setContentType(TransferFormat.NDJSON.contentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        OutputStream out = response.getOutputStream();
+        userImporter.importUsers(request.getInputStream(), transferFormat, report -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(report));
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // Bulk export in primary-key order, streamed from a DB cursor; password hashes only if asked for
+    @GetMapping("/users/export")
+    public void exportUsers(@RequestParam(defaultValue = "ndjson") String format,
+                            @RequestParam(defaultValue = "false") boolean includePasswords,
+                            HttpServletResponse response) throws IOException {
+        TransferFormat transferFormat = TransferFormat.of(format);
+        response.setContentType(transferFormat.contentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"users." + transferFormat.name().toLowerCase(Locale.ROOT) + "\"");
+        userExporter.export(response.getOutputStream(), transferFormat, includePasswords);
+    }
+}
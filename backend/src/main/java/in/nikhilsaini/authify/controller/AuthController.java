@@ -57,6 +57,14 @@ public class AuthController {
         return ResponseEntity.ok(authService.resetPassword(request));
     }
 
+    // Logout (revokes the bearer access token and, if given, the refresh token)
+    @PostMapping("/logout")
+    public ResponseEntity<AuthResponse> logout(@RequestHeader(value = "Authorization", required = false) String authHeader,
+                                               @RequestParam(required = false) String refreshToken){
+        String accessToken = authHeader != null && authHeader.startsWith("Bearer ") ? authHeader.substring(7) : null;
+        return ResponseEntity.ok(authService.logout(accessToken, refreshToken));
+    }
+
     // Refresh Token
     @PostMapping("/refresh-token")
     public ResponseEntity<AuthResponse> refreshToken(@RequestParam String refreshToken){
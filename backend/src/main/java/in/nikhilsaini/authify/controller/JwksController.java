@@ -0,0 +1,34 @@
+package in.nikhilsaini.authify.controller;
+
+
+import in.nikhilsaini.authify.security.JwtKeyRing;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+
+// Public keys for verifying our tokens locally (RS256 / ES256 / EdDSA). Empty key set in HS256 mode.
+@RestController
+@RequiredArgsConstructor
+public class JwksController {
+
+    private final JwtKeyRing keyRing;
+
+    @GetMapping(value = "/.well-known/jwks.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> jwks(@RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch){
+        String etag = keyRing.jwksEtag();
+        // short max-age so a rotated key shows up quickly; the ETag makes re-validation cheap
+        CacheControl cacheControl = CacheControl.maxAge(Duration.ofMinutes(5)).cachePublic();
+
+        if(etag.equals(ifNoneMatch)){
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).body(keyRing.jwksJson());
+    }
+}
@@ -0,0 +1,73 @@
+package in.nikhilsaini.authify.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+// Read-your-writes for the replica routing (ReplicaRoutingDataSource); every method is a pass-through when no
+// replicas are configured.
+// A user that was just written may not have reached the replicas yet, so for auth.datasource.replicas.stickyWindow
+// after a write (reported through UserCache.invalidate) their lookups run on the primary. Local to this node like
+// UserCache; keep the window above the usual replication lag.
+// Lookups that feed a write, or whose result must not miss a recent row, run on the primary always (onPrimary).
+@Component
+public class ReplicaRouting {
+
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private final boolean enabled;
+    private final Cache<String, Boolean> recentWrites;
+
+    public ReplicaRouting(@Value("${auth.datasource.replicas.urls:}") String replicaUrls,
+                          @Value("${auth.datasource.replicas.stickyWindow:5s}") Duration stickyWindow,
+                          @Value("${auth.datasource.replicas.maxStickyUsers:100000}") long maxStickyUsers) {
+        this.enabled = !replicaUrls.isBlank();
+        this.recentWrites = Caffeine.newBuilder()
+                .maximumSize(maxStickyUsers)
+                .expireAfterWrite(stickyWindow)
+                .build();
+    }
+
+    // call after every write to the user with this email
+    public void written(String email) {
+        if (enabled && email != null) {
+            recentWrites.put(key(email), Boolean.TRUE);
+        }
+    }
+
+    // a lookup of this user, on the primary if they were written within the sticky window
+    public <T> T readFor(String email, Supplier<T> lookup) {
+        if (enabled && email != null && recentWrites.getIfPresent(key(email)) != null) {
+            return onPrimary(lookup);
+        }
+        return lookup.get();
+    }
+
+    public <T> T onPrimary(Supplier<T> lookup) {
+        if (!enabled) {
+            return lookup.get();
+        }
+        Boolean outer = PINNED.get();
+        PINNED.set(Boolean.TRUE);
+        try {
+            return lookup.get();
+        } finally {
+            if (outer == null) {
+                PINNED.remove();
+            }
+        }
+    }
+
+    static boolean pinnedToPrimary() {
+        return PINNED.get() != null;
+    }
+
+    private static String key(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+}
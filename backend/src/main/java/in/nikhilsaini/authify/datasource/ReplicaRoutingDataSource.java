@@ -0,0 +1,144 @@
+package in.nikhilsaini.authify.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The read-only side of the DataSource (see ReplicaDataSourceConfig): LazyConnectionDataSourceProxy asks it for
+// the connection of every read-only transaction, i.e. @Transactional(readOnly = true) and every Spring Data
+// repository read outside a read-write transaction (SimpleJpaRepository is readOnly by default). Everything
+// else never gets here and goes to the primary.
+// Hands out a replica connection unless ReplicaRouting has pinned the thread to the primary. Of the healthy
+// replicas the one with the fewest connections in use is picked, ties go round robin. A replica that fails a
+// health check or a connection attempt is skipped until a health check passes again; with none left, reads go
+// to the primary.
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+    public static final class Replica {
+        private final String name;
+        private final HikariDataSource dataSource;
+        private volatile boolean healthy = true;
+
+        public Replica(String name, HikariDataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+
+    private final HikariDataSource primary;
+    private final List<Replica> replicas;
+    private final Duration healthCheckTimeout;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter toReplica;
+    private final Counter pinned;
+    private final Counter fallback;
+
+    public ReplicaRoutingDataSource(HikariDataSource primary, List<Replica> replicas, Duration healthCheckTimeout,
+                                    MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.healthCheckTimeout = healthCheckTimeout;
+        this.toReplica = Counter.builder("auth.datasource.reads").tag("target", "replica").register(meterRegistry);
+        // read on the primary because of ReplicaRouting
+        this.pinned = Counter.builder("auth.datasource.reads").tag("target", "pinned").register(meterRegistry);
+        // read on the primary because no replica was usable
+        this.fallback = Counter.builder("auth.datasource.reads").tag("target", "fallback").register(meterRegistry);
+        for (Replica replica : this.replicas) {
+            Gauge.builder("auth.datasource.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                    .tag("replica", replica.name).register(meterRegistry);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (ReplicaRouting.pinnedToPrimary()) {
+            pinned.increment();
+            return primary.getConnection();
+        }
+        Replica replica = pick();
+        if (replica != null) {
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                toReplica.increment();
+                return connection;
+            } catch (SQLException | RuntimeException e) {
+                // Hikari reports some driver problems (bad URL, ...) as RuntimeException
+                markDown(replica, e.getMessage());
+            }
+        }
+        fallback.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Credentials are configured per pool");
+    }
+
+    private Replica pick() {
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        Replica best = null;
+        int bestActive = Integer.MAX_VALUE;
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (!replica.healthy) {
+                continue;
+            }
+            int active = activeConnections(replica.dataSource);
+            if (active < bestActive) {
+                best = replica;
+                bestActive = active;
+            }
+        }
+        return best;
+    }
+
+    private static int activeConnections(HikariDataSource dataSource) {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return pool == null ? 0 : pool.getActiveConnections();
+    }
+
+    @Scheduled(fixedDelayString = "${auth.datasource.replicas.healthCheckInterval:2s}")
+    void checkHealth() {
+        for (Replica replica : replicas) {
+            String problem = null;
+            try (Connection connection = replica.dataSource.getConnection()) {
+                if (!connection.isValid((int) Math.max(1, healthCheckTimeout.toSeconds()))) {
+                    problem = "connection not valid";
+                }
+            } catch (SQLException | RuntimeException e) {
+                problem = e.getMessage();
+            }
+            if (problem != null) {
+                markDown(replica, problem);
+            } else if (!replica.healthy) {
+                replica.healthy = true;
+                log.info("Replica {} is back, routing reads to it again", replica.name);
+            }
+        }
+    }
+
+    private void markDown(Replica replica, String problem) {
+        if (replica.healthy) {
+            replica.healthy = false;
+            log.warn("Replica {} is unavailable, reads go elsewhere until it recovers: {}", replica.name, problem);
+        }
+    }
+
+    public void close() {
+        replicas.forEach(replica -> replica.dataSource.close());
+    }
+}
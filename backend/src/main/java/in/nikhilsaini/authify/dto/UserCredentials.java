@@ -0,0 +1,25 @@
+package in.nikhilsaini.authify.dto;
+
+import in.nikhilsaini.authify.entity.User;
+import in.nikhilsaini.authify.enums.AuthProvider;
+import in.nikhilsaini.authify.enums.Role;
+
+// What login, token refresh and request authentication need of a user, read with
+// UserRepository.findCredentialsByEmail: one lookup on the unique email index, no OTP / reset / timestamp
+// columns, and a plain object rather than a managed entity (no persistence context, no dirty checking).
+// Name is only here for the UserDto in auth responses, tokenVersion for the tokens.
+public record UserCredentials(Long id, String name, String email, String password, Role role, AuthProvider provider,
+                              boolean emailVerified, boolean accountNonLocked, int tokenVersion) {
+
+    public UserCredentials {
+        // rows from before roles existed
+        if (role == null) {
+            role = Role.USER;
+        }
+    }
+
+    public static UserCredentials of(User user) {
+        return new UserCredentials(user.getId(), user.getName(), user.getEmail(), user.getPassword(), user.getRole(),
+                user.getProvider(), user.isEmailVerified(), user.isAccountNonLocked(), user.getTokenVersion());
+    }
+}
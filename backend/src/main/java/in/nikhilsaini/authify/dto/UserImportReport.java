@@ -0,0 +1,23 @@
+package in.nikhilsaini.authify.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class UserImportReport {
+    private long processed;   // rows read so far
+    private long imported;
+    private long skipped;     // email already registered, or repeated in the input
+    private long failed;      // invalid rows
+    private boolean done;
+    @Builder.Default
+    private List<String> errors = new ArrayList<>();   // the first few failures, "line N: reason"
+}
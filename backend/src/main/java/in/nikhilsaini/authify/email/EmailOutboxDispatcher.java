@@ -0,0 +1,302 @@
+package in.nikhilsaini.authify.email;
+
+import in.nikhilsaini.authify.entity.EmailOutbox;
+import in.nikhilsaini.authify.enums.EmailType;
+import in.nikhilsaini.authify.enums.OutboxStatus;
+import in.nikhilsaini.authify.exception.EmailDeliveryException;
+import in.nikhilsaini.authify.repository.EmailOutboxRepository;
+import in.nikhilsaini.authify.util.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Drains tbl_email_outbox. The request path only ever inserts rows, so a slow provider can't hold up
+// register or forgotPassword; it only makes the outbox grow.
+// Each EmailType has its own bulkhead: a fixed pool of auth.mail.bulkhead.threads senders with a bounded queue.
+// A pass claims, per type, only as many due rows as that bulkhead has room for (FOR UPDATE SKIP LOCKED, so
+// nodes don't overlap), pushes their nextAttemptAt out by auth.mail.claimTimeout and hands them over in
+// transport batches (one SendGrid request of up to 1000 recipients). Slow welcome emails therefore never
+// delay OTPs, and nothing is claimed that can't be sent soon. Senders write each batch's outcome in its own
+// transaction: SENT, retried with exponential backoff, or DEAD. A batch the provider refuses for one of its
+// recipients (SendGrid answers 400 for a single invalid address) is halved and the halves sent again, down to
+// single rows, so only the rows that fail on their own are DEAD.
+// A circuit breaker watches provider failures. While it is open nothing is claimed and the rows simply wait
+// in the outbox; once openDuration has passed one trial batch probes the provider.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EmailOutboxDispatcher {
+
+    private final EmailOutboxRepository outboxRepository;
+    private final EmailTransport transport;
+    private final EmailTemplates templates;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${auth.mail.bulkhead.threads:4}")
+    private int bulkheadThreads;
+
+    // batches waiting per type, on top of the ones being sent
+    @Value("${auth.mail.bulkhead.queueCapacity:4}")
+    private int bulkheadQueueCapacity;
+
+    @Value("${auth.mail.maxAttempts:8}")
+    private int maxAttempts;
+
+    @Value("${auth.mail.initialBackoff:5s}")
+    private Duration initialBackoff;
+
+    @Value("${auth.mail.maxBackoff:30m}")
+    private Duration maxBackoff;
+
+    // must cover a batch's queueing plus send time
+    @Value("${auth.mail.claimTimeout:2m}")
+    private Duration claimTimeout;
+
+    @Value("${auth.mail.retention:7d}")
+    private Duration retention;
+
+    @Value("${auth.mail.breaker.windowSize:20}")
+    private int breakerWindowSize;
+
+    @Value("${auth.mail.breaker.minimumCalls:5}")
+    private int breakerMinimumCalls;
+
+    @Value("${auth.mail.breaker.failureRateThreshold:0.5}")
+    private double breakerFailureRateThreshold;
+
+    @Value("${auth.mail.breaker.openDuration:30s}")
+    private Duration breakerOpenDuration;
+
+    private final Map<EmailType, ThreadPoolExecutor> bulkheads = new EnumMap<>(EmailType.class);
+    private final Map<EmailType, Timer> providerLatency = new EnumMap<>(EmailType.class);
+    private final AtomicLong backlog = new AtomicLong();
+    private CircuitBreaker breaker;
+    private Counter sentCounter;
+    private Counter retriedCounter;
+    private Counter deadCounter;
+    private Counter rejectedCounter;
+    private Timer deliveryLatency;
+
+    @PostConstruct
+    void init() {
+        breaker = new CircuitBreaker(breakerWindowSize, breakerMinimumCalls, breakerFailureRateThreshold,
+                breakerOpenDuration);
+        for (EmailType type : EmailType.values()) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            String prefix = "email-" + type.name().toLowerCase().replace('_', '-') + "-";
+            ThreadPoolExecutor bulkhead = new ThreadPoolExecutor(bulkheadThreads, bulkheadThreads, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(bulkheadQueueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.AbortPolicy());
+            bulkheads.put(type, bulkhead);
+
+            String tag = type.name();
+            Gauge.builder("auth.mail.bulkhead.queue", bulkhead, b -> b.getQueue().size())
+                    .tag("type", tag).register(meterRegistry);
+            Gauge.builder("auth.mail.bulkhead.inflight", bulkhead, ThreadPoolExecutor::getActiveCount)
+                    .tag("type", tag).register(meterRegistry);
+            providerLatency.put(type, Timer.builder("auth.mail.send.time").tag("type", tag).register(meterRegistry));
+        }
+        sentCounter = Counter.builder("auth.mail.sent").register(meterRegistry);
+        retriedCounter = Counter.builder("auth.mail.failed").tag("outcome", "retry").register(meterRegistry);
+        deadCounter = Counter.builder("auth.mail.failed").tag("outcome", "dead").register(meterRegistry);
+        rejectedCounter = Counter.builder("auth.mail.breaker.rejected").register(meterRegistry);
+        // enqueue to accepted by the provider, including retries
+        deliveryLatency = Timer.builder("auth.mail.delivery.latency").register(meterRegistry);
+        Gauge.builder("auth.mail.outbox.pending", backlog, AtomicLong::get).register(meterRegistry);
+        // 0 = closed, 1 = half-open, 2 = open
+        Gauge.builder("auth.mail.breaker.state", this, d -> d.breaker.state().ordinal()).register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        bulkheads.values().forEach(ThreadPoolExecutor::shutdown);
+    }
+
+    @Scheduled(fixedDelayString = "${auth.mail.dispatchInterval:250ms}")
+    void dispatch() {
+        if (!breaker.isCallPermitted()) {
+            return;
+        }
+        boolean probing = breaker.state() != CircuitBreaker.State.CLOSED;
+        int batchSize = Math.max(1, transport.maxBatchSize());
+        for (EmailType type : EmailType.values()) {
+            ThreadPoolExecutor bulkhead = bulkheads.get(type);
+            int freeSlots = bulkheadThreads + bulkheadQueueCapacity - bulkhead.getActiveCount() - bulkhead.getQueue().size();
+            if (probing) {
+                freeSlots = Math.min(freeSlots, 1);
+            }
+            if (freeSlots <= 0) {
+                continue;
+            }
+            List<EmailOutbox> claimed = claim(type, freeSlots * batchSize);
+            for (int from = 0; from < claimed.size(); from += batchSize) {
+                List<EmailOutbox> chunk = claimed.subList(from, Math.min(from + batchSize, claimed.size()));
+                try {
+                    bulkhead.execute(() -> send(type, chunk));
+                } catch (RejectedExecutionException e) {
+                    release(chunk);
+                }
+            }
+            if (probing && !claimed.isEmpty()) {
+                return;   // one trial batch at a time
+            }
+        }
+    }
+
+    private List<EmailOutbox> claim(EmailType type, int limit) {
+        return transactionTemplate.execute(tx -> {
+            Instant now = Instant.now();
+            List<EmailOutbox> due = outboxRepository.findDue(type, OutboxStatus.PENDING, now, PageRequest.of(0, limit));
+            for (EmailOutbox email : due) {
+                email.setAttempts(email.getAttempts() + 1);
+                email.setNextAttemptAt(now.plus(claimTimeout));
+            }
+            return due;
+        });
+    }
+
+    private void release(List<EmailOutbox> emails) {
+        List<Long> ids = emails.stream().map(EmailOutbox::getId).toList();
+        transactionTemplate.executeWithoutResult(tx -> outboxRepository.release(ids, Instant.now()));
+    }
+
+    // runs on the type's bulkhead
+    private void send(EmailType type, List<EmailOutbox> emails) {
+        if (!breaker.tryAcquire()) {
+            rejectedCounter.increment();
+            release(emails);
+            return;
+        }
+        deliver(type, emails);
+    }
+
+    private void deliver(EmailType type, List<EmailOutbox> emails) {
+        EmailDeliveryException failure = null;
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            List<EmailRecipient> recipients = emails.stream().map(templates::recipient).toList();
+            transport.send(templates.template(type), recipients);
+        } catch (EmailDeliveryException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = new EmailDeliveryException(e.toString(), true, e);
+        } finally {
+            sample.stop(providerLatency.get(type));
+        }
+
+        // a permanent rejection still means the provider is up and answering
+        CircuitBreaker.State before = breaker.state();
+        if (failure == null || !failure.isRetryable()) {
+            breaker.onSuccess();
+        } else {
+            breaker.onFailure();
+        }
+        CircuitBreaker.State after = breaker.state();
+        if (after != before) {
+            log.warn("Email provider circuit breaker {} -> {}", before, after);
+        }
+
+        if (failure != null && failure.isRecipientRejected() && emails.size() > 1) {
+            // a few bad rows cost about 2 * log2(batch size) extra requests each, the rest still goes out
+            int half = emails.size() / 2;
+            deliver(type, emails.subList(0, half));
+            deliver(type, emails.subList(half, emails.size()));
+            return;
+        }
+
+        try {
+            if (failure == null) {
+                markSent(emails);
+            } else {
+                markFailed(emails, failure);
+            }
+        } catch (RuntimeException e) {
+            // the claim lapses and the rows are sent again, at-least-once
+            log.error("Could not record the outcome of {} {} email(s)", emails.size(), type, e);
+        }
+    }
+
+    private void markSent(List<EmailOutbox> emails) {
+        Instant now = Instant.now();
+        List<Long> ids = emails.stream().map(EmailOutbox::getId).toList();
+        transactionTemplate.executeWithoutResult(tx -> outboxRepository.markSent(ids, now));
+        for (EmailOutbox email : emails) {
+            deliveryLatency.record(Duration.between(email.getCreatedAt(), now));
+        }
+        sentCounter.increment(emails.size());
+    }
+
+    private void markFailed(List<EmailOutbox> emails, EmailDeliveryException failure) {
+        Instant now = Instant.now();
+        String error = truncate(failure.getMessage());
+        transactionTemplate.executeWithoutResult(tx -> {
+            for (EmailOutbox email : emails) {
+                if (!failure.isRetryable() || email.getAttempts() >= maxAttempts) {
+                    outboxRepository.markDead(email.getId(), error);
+                    deadCounter.increment();
+                    log.warn("Giving up on {} email #{} after {} attempt(s): {}", email.getType(), email.getId(),
+                            email.getAttempts(), error);
+                } else {
+                    outboxRepository.reschedule(email.getId(), now.plus(backoff(email.getAttempts())), error);
+                    retriedCounter.increment();
+                }
+            }
+        });
+    }
+
+    // initialBackoff * 2^(attempt-1), capped, with jitter so a failed burst doesn't retry in lockstep
+    private Duration backoff(int attempt) {
+        long base = initialBackoff.toMillis() << Math.min(attempt - 1, 20);
+        long capped = Math.min(base, maxBackoff.toMillis());
+        return Duration.ofMillis(capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1));
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() <= 500 ? message : message.substring(0, 500);
+    }
+
+    @Scheduled(fixedDelayString = "${auth.mail.backlogInterval:10s}")
+    void refreshBacklog() {
+        backlog.set(outboxRepository.countByStatus(OutboxStatus.PENDING));
+    }
+
+    @Scheduled(fixedDelayString = "${auth.mail.cleanupInterval:1h}")
+    void purgeSent() {
+        int deleted = transactionTemplate.execute(tx -> outboxRepository.deleteSentBefore(Instant.now().minus(retention)));
+        if (deleted > 0) {
+            log.info("Purged {} sent outbox rows", deleted);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package in.nikhilsaini.authify.email;
+
+import java.util.Map;
+
+// One recipient of a batched send and the values for the template's placeholders
+public record EmailRecipient(String email, Map<String, String> values) {
+}
@@ -0,0 +1,82 @@
+package in.nikhilsaini.authify.email;
+
+import org.springframework.web.util.HtmlUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// An HTML template with {{name}} placeholders, parsed once into literal and placeholder segments.
+// render() fills it per recipient (values are HTML-escaped); taggedHtml() has each placeholder replaced by a
+// SendGrid substitution tag (-name-) so one request can carry many recipients' values.
+// Subjects are plain text and take no placeholders, so the same subject works for a whole batch.
+public final class EmailTemplate {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{\\{(\\w+)}}");
+
+    private final String subject;
+    private final String[] literals;      // literals[i] comes before names[i]; one more literal than names
+    private final String[] names;
+    private final String taggedHtml;
+    private final int literalLength;
+
+    private EmailTemplate(String subject, String[] literals, String[] names) {
+        this.subject = subject;
+        this.literals = literals;
+        this.names = names;
+        StringBuilder tagged = new StringBuilder();
+        int length = 0;
+        for (int i = 0; i < names.length; i++) {
+            tagged.append(literals[i]).append(tag(names[i]));
+            length += literals[i].length();
+        }
+        tagged.append(literals[names.length]);
+        this.taggedHtml = tagged.toString();
+        this.literalLength = length + literals[names.length].length();
+    }
+
+    public static EmailTemplate compile(String subject, String html) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        Matcher matcher = PLACEHOLDER.matcher(html);
+        int last = 0;
+        while (matcher.find()) {
+            literals.add(html.substring(last, matcher.start()));
+            names.add(matcher.group(1));
+            last = matcher.end();
+        }
+        literals.add(html.substring(last));
+        return new EmailTemplate(subject, literals.toArray(String[]::new), names.toArray(String[]::new));
+    }
+
+    public String subject() {
+        return subject;
+    }
+
+    public String taggedHtml() {
+        return taggedHtml;
+    }
+
+    public List<String> placeholders() {
+        return List.of(names);
+    }
+
+    public static String tag(String name) {
+        return "-" + name + "-";
+    }
+
+    public static String escape(String value) {
+        return value == null ? "" : HtmlUtils.htmlEscape(value);
+    }
+
+    public OutgoingEmail render(String to, Map<String, String> values) {
+        StringBuilder html = new StringBuilder(literalLength + 32 * names.length);
+        for (int i = 0; i < names.length; i++) {
+            html.append(literals[i]).append(escape(values.get(names[i])));
+        }
+        html.append(literals[names.length]);
+        return new OutgoingEmail(to, subject, html.toString());
+    }
+}
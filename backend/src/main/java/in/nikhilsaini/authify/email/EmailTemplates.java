@@ -0,0 +1,50 @@
+package in.nikhilsaini.authify.email;
+
+import in.nikhilsaini.authify.entity.EmailOutbox;
+import in.nikhilsaini.authify.enums.EmailType;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+// Compiled template for each EmailType, and the placeholder values an outbox row supplies
+@Component
+public class EmailTemplates {
+
+    private static final String APP_NAME = "Authify";
+
+    private final Map<EmailType, EmailTemplate> templates = new EnumMap<>(EmailType.class);
+
+    public EmailTemplates() {
+        templates.put(EmailType.VERIFICATION_OTP, EmailTemplate.compile(
+                "Verify your email - " + APP_NAME,
+                "<p>Your verification OTP is: <b>{{otp}}</b></p>"
+                        + "<p>This OTP will expire in 10 minutes.</p>"
+                        + "<p>Thank you for registering with " + APP_NAME + "!</p>"));
+        templates.put(EmailType.PASSWORD_RESET_OTP, EmailTemplate.compile(
+                "Reset your Password - " + APP_NAME,
+                "<p>Your password reset OTP is: <b>{{otp}}</b></p>"
+                        + "<p>This OTP will expire in 10 minutes.</p>"
+                        + "<p>If you did not request this, please ignore this email.</p>"));
+        templates.put(EmailType.WELCOME, EmailTemplate.compile(
+                "Welcome to " + APP_NAME + "! 🎉",
+                "<h3>Hello {{name}},</h3>"
+                        + "<p>Your email has been successfully verified.</p>"
+                        + "<h1>Welcome to " + APP_NAME + " ❤️</h1>"
+                        + "<p>You can now log in and start using your account.</p>"
+                        + "<p>Regards,<br/>Authify Team</p>"));
+    }
+
+    public EmailTemplate template(EmailType type) {
+        return templates.get(type);
+    }
+
+    public EmailRecipient recipient(EmailOutbox email) {
+        String key = switch (email.getType()) {
+            case VERIFICATION_OTP, PASSWORD_RESET_OTP -> "otp";
+            case WELCOME -> "name";
+        };
+        String value = email.getPayload() == null ? "" : email.getPayload();
+        return new EmailRecipient(email.getRecipient(), Map.of(key, value));
+    }
+}
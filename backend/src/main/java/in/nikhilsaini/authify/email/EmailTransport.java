@@ -0,0 +1,19 @@
+package in.nikhilsaini.authify.email;
+
+import in.nikhilsaini.authify.exception.EmailDeliveryException;
+
+import java.util.List;
+
+// Delivers emails. Selected with auth.mail.transport; implementations must be thread-safe,
+// the dispatcher calls them from several sender threads at once.
+public interface EmailTransport {
+
+    // Sends one template to up to maxBatchSize() recipients. All or nothing: returns if the whole batch was
+    // accepted, throws if none of it was. Throws with recipientRejected set when the batch may have been
+    // refused for one of its recipients, the dispatcher then splits it.
+    void send(EmailTemplate template, List<EmailRecipient> recipients) throws EmailDeliveryException;
+
+    default int maxBatchSize() {
+        return 1;
+    }
+}
@@ -0,0 +1,5 @@
+package in.nikhilsaini.authify.email;
+
+// A rendered email, ready for an EmailTransport
+public record OutgoingEmail(String to, String subject, String html) {
+}
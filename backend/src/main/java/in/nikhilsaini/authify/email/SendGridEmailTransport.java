@@ -0,0 +1,120 @@
+package in.nikhilsaini.authify.email;
+
+import com.sendgrid.Client;
+import com.sendgrid.Method;
+import com.sendgrid.Request;
+import com.sendgrid.Response;
+import com.sendgrid.SendGrid;
+import com.sendgrid.helpers.mail.Mail;
+import com.sendgrid.helpers.mail.objects.Content;
+import com.sendgrid.helpers.mail.objects.Email;
+import com.sendgrid.helpers.mail.objects.Personalization;
+import in.nikhilsaini.authify.exception.EmailDeliveryException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Sends through the SendGrid v3 API over one shared client with a connection pool, so sends reuse
+// kept-alive TLS connections instead of opening a new one per email.
+// A batch is one request: the template's tagged HTML once, plus a personalization per recipient carrying
+// its own "to" and substitution values. SendGrid accepts up to 1000 personalizations per request.
+@Component
+@ConditionalOnProperty(name = "auth.mail.transport", havingValue = "sendgrid", matchIfMissing = true)
+public class SendGridEmailTransport implements EmailTransport {
+
+    private static final int MAX_PERSONALIZATIONS = 1000;
+
+    @Value("${app.mail.from}")
+    private String fromEmail;
+
+    @Value("${sendgrid.api.key}")
+    private String sendGridApiKey;
+
+    @Value("${auth.mail.sendgrid.maxConnections:20}")
+    private int maxConnections;
+
+    @Value("${auth.mail.sendgrid.connectTimeout:2s}")
+    private Duration connectTimeout;
+
+    @Value("${auth.mail.sendgrid.readTimeout:10s}")
+    private Duration readTimeout;
+
+    private CloseableHttpClient httpClient;
+    private SendGrid sendGrid;
+
+    @PostConstruct
+    void init() {
+        PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager();
+        pool.setMaxTotal(maxConnections);
+        pool.setDefaultMaxPerRoute(maxConnections);   // everything goes to api.sendgrid.com
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) connectTimeout.toMillis())
+                .setConnectionRequestTimeout((int) connectTimeout.toMillis())
+                .setSocketTimeout((int) readTimeout.toMillis())
+                .build();
+        httpClient = HttpClients.custom()
+                .setConnectionManager(pool)
+                .setDefaultRequestConfig(requestConfig)
+                .evictIdleConnections(30, TimeUnit.SECONDS)
+                .build();
+        sendGrid = new SendGrid(sendGridApiKey, new Client(httpClient));
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        httpClient.close();
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return MAX_PERSONALIZATIONS;
+    }
+
+    @Override
+    public void send(EmailTemplate template, List<EmailRecipient> recipients) throws EmailDeliveryException {
+        Mail mail = new Mail();
+        mail.setFrom(new Email(fromEmail));
+        mail.setSubject(template.subject());
+        mail.addContent(new Content("text/html", template.taggedHtml()));
+        for (EmailRecipient recipient : recipients) {
+            Personalization personalization = new Personalization();
+            personalization.addTo(new Email(recipient.email()));
+            for (String name : template.placeholders()) {
+                personalization.addSubstitution(EmailTemplate.tag(name), EmailTemplate.escape(recipient.values().get(name)));
+            }
+            mail.addPersonalization(personalization);
+        }
+
+        Response response;
+        try {
+            Request request = new Request();
+            request.setMethod(Method.POST);
+            request.setEndpoint("mail/send");
+            request.setBody(mail.build());
+            response = sendGrid.api(request);
+        } catch (IOException e) {
+            throw new EmailDeliveryException("SendGrid request failed: " + e.getMessage(), true, e);
+        }
+
+        int status = response.getStatusCode();
+        if (status < 200 || status >= 300) {
+            // 429 and 5xx are worth retrying, any other 4xx will fail the same way again.
+            // 400 / 413 reject the request body: one bad personalization fails the whole batch
+            boolean retryable = status == 429 || status >= 500;
+            boolean recipientRejected = status == 400 || status == 413;
+            throw new EmailDeliveryException("SendGrid returned " + status + ": " + response.getBody(), retryable,
+                    recipientRejected);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package in.nikhilsaini.authify.email;
+
+import in.nikhilsaini.authify.exception.EmailDeliveryException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Sends over SMTP (e.g. an internal MTA) through a pool of persistent, authenticated connections.
+// A connection is opened (and STARTTLS/AUTH done) once and then carries many messages back to back; it is
+// replaced after auth.mail.smtp.maxMessagesPerConnection messages, after sitting idle for
+// auth.mail.smtp.maxIdle (servers drop idle sessions), or after any error.
+// One message per send() call: SMTP accepts or rejects each message separately, so batching them under one
+// outcome would resend already-delivered mail on a partial failure. The dispatcher's sender threads share the pool.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "auth.mail.transport", havingValue = "smtp")
+public class SmtpEmailTransport implements EmailTransport {
+
+    @Value("${app.mail.from}")
+    private String fromEmail;
+
+    @Value("${auth.mail.smtp.host}")
+    private String host;
+
+    @Value("${auth.mail.smtp.port:587}")
+    private int port;
+
+    @Value("${auth.mail.smtp.username:}")
+    private String username;
+
+    @Value("${auth.mail.smtp.password:}")
+    private String password;
+
+    @Value("${auth.mail.smtp.starttls:true}")
+    private boolean starttls;
+
+    @Value("${auth.mail.smtp.poolSize:12}")
+    private int poolSize;
+
+    @Value("${auth.mail.smtp.maxMessagesPerConnection:100}")
+    private int maxMessagesPerConnection;
+
+    @Value("${auth.mail.smtp.maxIdle:30s}")
+    private Duration maxIdle;
+
+    @Value("${auth.mail.smtp.connectTimeout:5s}")
+    private Duration connectTimeout;
+
+    @Value("${auth.mail.smtp.readTimeout:10s}")
+    private Duration readTimeout;
+
+    private Session session;
+    private Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+
+    private static final class PooledConnection {
+        final Transport transport;
+        int messagesSent;
+        long lastUsedNanos = System.nanoTime();
+
+        PooledConnection(Transport transport) {
+            this.transport = transport;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        Properties props = new Properties();
+        props.put("mail.smtp.host", host);
+        props.put("mail.smtp.port", String.valueOf(port));
+        props.put("mail.smtp.auth", String.valueOf(!username.isBlank()));
+        props.put("mail.smtp.starttls.enable", String.valueOf(starttls));
+        props.put("mail.smtp.starttls.required", String.valueOf(starttls));
+        props.put("mail.smtp.connectiontimeout", String.valueOf(connectTimeout.toMillis()));
+        props.put("mail.smtp.timeout", String.valueOf(readTimeout.toMillis()));
+        props.put("mail.smtp.writetimeout", String.valueOf(readTimeout.toMillis()));
+        session = Session.getInstance(props);
+        permits = new Semaphore(poolSize);
+    }
+
+    @PreDestroy
+    void close() {
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            closeQuietly(connection);
+        }
+    }
+
+    @Override
+    public void send(EmailTemplate template, List<EmailRecipient> recipients) throws EmailDeliveryException {
+        for (EmailRecipient recipient : recipients) {
+            send(template.render(recipient.email(), recipient.values()));
+        }
+    }
+
+    private void send(OutgoingEmail email) throws EmailDeliveryException {
+        acquirePermit();
+        PooledConnection connection = null;
+        boolean reusable = false;
+        try {
+            connection = borrow();
+            MimeMessage message = new MimeMessage(session);
+            message.setFrom(new InternetAddress(fromEmail));
+            message.setRecipient(Message.RecipientType.TO, new InternetAddress(email.to()));
+            message.setSubject(email.subject(), StandardCharsets.UTF_8.name());
+            message.setContent(email.html(), "text/html; charset=UTF-8");
+            message.saveChanges();
+            connection.transport.sendMessage(message, message.getAllRecipients());
+            connection.messagesSent++;
+            reusable = true;
+        } catch (MessagingException e) {
+            throw new EmailDeliveryException("SMTP send failed: " + String.valueOf(e.getMessage()).strip(), !isPermanent(e), e);
+        } finally {
+            if (connection != null) {
+                giveBack(connection, reusable);
+            }
+            permits.release();
+        }
+    }
+
+    private void acquirePermit() throws EmailDeliveryException {
+        try {
+            if (!permits.tryAcquire(connectTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new EmailDeliveryException("No SMTP connection available", true);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EmailDeliveryException("Interrupted waiting for an SMTP connection", true, e);
+        }
+    }
+
+    // most recently used first, so surplus connections go idle and get retired
+    private PooledConnection borrow() throws MessagingException {
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            if (System.nanoTime() - connection.lastUsedNanos < maxIdle.toNanos() && connection.transport.isConnected()) {
+                return connection;
+            }
+            closeQuietly(connection);
+        }
+        Transport transport = session.getTransport("smtp");
+        if (username.isBlank()) {
+            transport.connect();
+        } else {
+            transport.connect(host, port, username, password);
+        }
+        return new PooledConnection(transport);
+    }
+
+    private void giveBack(PooledConnection connection, boolean reusable) {
+        if (reusable && connection.messagesSent < maxMessagesPerConnection) {
+            connection.lastUsedNanos = System.nanoTime();
+            idle.offerFirst(connection);
+        } else {
+            closeQuietly(connection);
+        }
+    }
+
+    private static void closeQuietly(PooledConnection connection) {
+        try {
+            connection.transport.close();
+        } catch (MessagingException e) {
+            log.debug("Error closing SMTP connection", e);
+        }
+    }
+
+    // 5xx replies will fail the same way again; 4xx replies and I/O errors are worth retrying
+    private static boolean isPermanent(MessagingException e) {
+        for (Exception next = e; next != null; next = next instanceof MessagingException m ? m.getNextException() : null) {
+            if (next instanceof SMTPSendFailedException failed && failed.getReturnCode() >= 500) {
+                return true;
+            }
+            if (next instanceof SMTPAddressFailedException failed && failed.getReturnCode() >= 500) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,66 @@
+package in.nikhilsaini.authify.email;
+
+import in.nikhilsaini.authify.exception.EmailDeliveryException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Local/offline transport: logs emails instead of sending them and keeps the most recent ones in memory.
+// auth.mail.stub.failureRate makes a share of sends fail, to exercise retries and dead-lettering.
+// auth.mail.stub.rejectedDomain fails any batch with a recipient at that domain the way SendGrid answers an
+// invalid address, to exercise batch splitting.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "auth.mail.transport", havingValue = "stub")
+public class StubEmailTransport implements EmailTransport {
+
+    private static final int KEEP_RECENT = 100;
+
+    @Value("${auth.mail.stub.failureRate:0}")
+    private double failureRate;
+
+    private final Deque<OutgoingEmail> recent = new ConcurrentLinkedDeque<>();
+
+    @Value("${auth.mail.stub.rejectedDomain:}")
+    private String rejectedDomain;
+
+    @Value("${auth.mail.stub.maxBatchSize:1000}")
+    private int maxBatchSize;
+
+    @Override
+    public int maxBatchSize() {
+        return maxBatchSize;
+    }
+
+    @Override
+    public void send(EmailTemplate template, List<EmailRecipient> recipients) throws EmailDeliveryException {
+        if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            throw new EmailDeliveryException("Simulated delivery failure", true);
+        }
+        if (!rejectedDomain.isEmpty()
+                && recipients.stream().anyMatch(r -> r.email().endsWith("@" + rejectedDomain))) {
+            throw new EmailDeliveryException("Simulated rejection of a recipient at " + rejectedDomain, false, true);
+        }
+        log.info("[stub] batch of {} \"{}\" email(s)", recipients.size(), template.subject());
+        for (EmailRecipient recipient : recipients) {
+            OutgoingEmail email = template.render(recipient.email(), recipient.values());
+            recent.addFirst(email);
+            log.info("[stub] email to {}: {}\n{}", email.to(), email.subject(), email.html());
+        }
+        while (recent.size() > KEEP_RECENT) {
+            recent.pollLast();
+        }
+    }
+
+    // newest first
+    public List<OutgoingEmail> recentEmails() {
+        return new ArrayList<>(recent);
+    }
+}
@@ -0,0 +1,50 @@
+package in.nikhilsaini.authify.entity;
+
+import in.nikhilsaini.authify.enums.EmailType;
+import in.nikhilsaini.authify.enums.OutboxStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// Emails waiting to be sent. Rows are written in the same transaction as the change that triggers them
+// and drained by EmailOutboxDispatcher, so a crash can delay an email but not lose it.
+@Entity
+@Table(name = "tbl_email_outbox", indexes = {
+        @Index(name = "idx_outbox_due", columnList = "type, status, nextAttemptAt"),
+        @Index(name = "idx_outbox_sent", columnList = "status, sentAt")
+})
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class EmailOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private EmailType type;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    private String payload;         // template value (OTP, name), cleared once the row is done
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OutboxStatus status;
+
+    private int attempts;
+    private Instant nextAttemptAt;  // also pushed forward while a dispatcher holds the row
+    private Instant createdAt;
+    private Instant sentAt;
+
+    @Column(length = 500)
+    private String lastError;
+}
@@ -0,0 +1,59 @@
+package in.nikhilsaini.authify.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+// One asymmetric JWT signing key, shared by every node through this table (see JwtKeyRing).
+// The private half is sealed with a key derived from auth.jwt.secret, never stored in the clear.
+@Entity
+@Table(name = "tbl_jwt_keys")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class JwtSigningKey implements Persistable<String> {
+
+    @Id
+    @Column(length = 64)
+    private String kid;
+
+    @Column(nullable = false, length = 16)
+    private String algorithm;       // RS256 / ES256 / EdDSA
+
+    @Column(nullable = false, length = 4096)
+    private String privateKey;      // base64(iv | AES-GCM(PKCS#8))
+
+    @Column(nullable = false, length = 1024)
+    private String publicKey;       // base64(X.509)
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    private Instant retiresAt;      // null while it signs, then verifies until this
+
+    // kids are assigned by us, this tells Spring Data to insert without a select first
+    @Transient
+    @Builder.Default
+    private boolean newKey = true;
+
+    @Override
+    public String getId() {
+        return kid;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newKey;
+    }
+
+    @PostLoad
+    void markLoaded() {
+        newKey = false;
+    }
+}
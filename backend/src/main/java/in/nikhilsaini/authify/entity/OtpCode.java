@@ -0,0 +1,32 @@
+package in.nikhilsaini.authify.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// Outstanding OTPs for auth.otp.store=jdbc, shared by every node
+@Entity
+@Table(name = "tbl_otp_codes", indexes = {
+        @Index(name = "idx_otp_expires", columnList = "expiresAt")
+})
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OtpCode {
+
+    @Id
+    private String id;           // PURPOSE:email
+
+    @Column(nullable = false, length = 64)
+    private String digest;       // hex SHA-256 of purpose, email and code, never the code itself
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+
+    private int attempts;
+}
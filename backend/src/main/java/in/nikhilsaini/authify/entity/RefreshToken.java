@@ -0,0 +1,53 @@
+package in.nikhilsaini.authify.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+// One issued refresh token. Tokens rotated from each other share a familyId,
+// so reusing an old one can revoke the whole chain.
+@Entity
+@Table(name = "tbl_refresh_tokens", indexes = {
+        @Index(name = "idx_refresh_family", columnList = "familyId"),
+        @Index(name = "idx_refresh_expires", columnList = "expiresAt")
+})
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RefreshToken implements Persistable<String> {
+
+    @Id
+    private String id;          // jti claim
+
+    @Column(nullable = false)
+    private String familyId;
+
+    @Column(nullable = false)
+    private String email;
+
+    private Instant issuedAt;
+    private Instant expiresAt;
+    private Instant usedAt;     // set once, when rotated
+    private boolean revoked;
+
+    // ids are assigned by us, this tells Spring Data to insert without a select first
+    @Transient
+    @Builder.Default
+    private boolean newToken = true;
+
+    @Override
+    public boolean isNew() {
+        return newToken;
+    }
+
+    @PostLoad
+    void markLoaded() {
+        newToken = false;
+    }
+}
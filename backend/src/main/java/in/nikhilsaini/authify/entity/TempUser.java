@@ -3,6 +3,8 @@ package in.nikhilsaini.authify.entity;
 
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -11,6 +13,8 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
+// range-scanned by the expired-registration purge
+@Table(indexes = @Index(name = "idx_temp_user_otp_expiry", columnList = "otpExpiry"))
 @Data
 @Builder
 @NoArgsConstructor
@@ -21,7 +25,6 @@ public class TempUser {
     private String email;
     private String name;
     private String password;
-    private String otp;
-    private LocalDateTime otpGeneratedAt;
+    // the pending registration is dropped after this, the OTP itself lives in OtpStore
     private LocalDateTime otpExpiry;
 }
@@ -0,0 +1,43 @@
+package in.nikhilsaini.authify.entity;
+
+import in.nikhilsaini.authify.enums.RevocationType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.Instant;
+
+// Append-only revocation log, replayed into the in-memory denylist at startup and tailed by other nodes
+@Entity
+@Table(name = "tbl_token_revocations", indexes = {
+        @Index(name = "idx_revocation_expires", columnList = "expiresAt"),
+        @Index(name = "idx_revocation_created", columnList = "createdAt")
+})
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TokenRevocation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private RevocationType type;
+
+    @Column(name = "revoked_value", nullable = false)
+    private String value;        // jti for TOKEN, email for SUBJECT
+
+    private Instant notBefore;   // SUBJECT: tokens issued before this are revoked
+    private Instant expiresAt;   // the entry is useless after this, every affected token has expired
+
+    // set by the DB (one clock for every node), the log is tailed by it
+    @Column(nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("CURRENT_TIMESTAMP(6)")
+    private Instant createdAt;
+}
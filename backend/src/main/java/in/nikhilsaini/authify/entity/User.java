@@ -7,7 +7,11 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.sql.Timestamp;
@@ -15,21 +19,40 @@ import java.time.LocalDateTime;
 
 
 @Entity
-@Table(name="tbl_users")
+@Table(name="tbl_users", indexes = {
+        // only the purge of stale OTP columns uses these
+        @Index(name = "idx_users_otp_expiry", columnList = "otpExpiry"),
+        @Index(name = "idx_users_reset_otp_expiry", columnList = "resetOtpExpiry"),
+        // KnownEmails tails new users by creation time
+        @Index(name = "idx_users_created_at", columnList = "createdAt")
+})
+// second-level cache regions, only used with auth.cache.l2.enabled (see SecondLevelCacheConfig)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = User.CACHE_REGION)
+@NaturalIdCache(region = User.NATURAL_ID_CACHE_REGION)
 @Data
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 public class User {
 
+    public static final int ID_ALLOCATION_SIZE = 50;
+    public static final String CACHE_REGION = "users";
+    public static final String NATURAL_ID_CACHE_REGION = "users-by-email";
 
+
+    // ids come from tbl_id_generators in blocks of 50, so inserts need no round trip for the key and
+    // Hibernate can batch them; V2__seed_user_id_allocator moves the counter past ids from before
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "user_ids")
+    @TableGenerator(name = "user_ids", table = "tbl_id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "tbl_users", allocationSize = User.ID_ALLOCATION_SIZE)
     private Long id;
 
     private String name;
 
-    @Column(unique = true , nullable = false)
+    // what every lookup goes by; never changes once the account exists. Unique like any natural id
+    @NaturalId
+    @Column(nullable = false)
     private String email;
     private String password;
 
@@ -38,6 +61,7 @@ public class User {
 
     private boolean emailVerified = false;
 
+    // no longer written, OTPs live in OtpStore; left-over values are cleared by ExpiredOtpPurger
     private String otp; // valid for only few minutes
     private LocalDateTime otpGeneratedAt;
     private LocalDateTime otpExpiry;   // 5-10 minutes
@@ -52,6 +76,9 @@ public class User {
 
     private boolean accountNonLocked = true;
 
+    // bumped on password reset and lock changes, tokens carrying an older version are rejected
+    private int tokenVersion;
+
 
     @CreationTimestamp
     @Column(updatable = false)
@@ -0,0 +1,7 @@
+package in.nikhilsaini.authify.enums;
+
+public enum EmailType {
+    VERIFICATION_OTP,
+    PASSWORD_RESET_OTP,
+    WELCOME
+}
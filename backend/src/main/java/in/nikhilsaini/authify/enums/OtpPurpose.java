@@ -0,0 +1,6 @@
+package in.nikhilsaini.authify.enums;
+
+public enum OtpPurpose {
+    VERIFY_EMAIL,
+    RESET_PASSWORD
+}
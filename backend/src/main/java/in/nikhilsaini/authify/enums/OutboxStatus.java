@@ -0,0 +1,7 @@
+package in.nikhilsaini.authify.enums;
+
+public enum OutboxStatus {
+    PENDING,    // waiting for (another) delivery attempt
+    SENT,
+    DEAD        // gave up: permanent rejection or out of attempts
+}
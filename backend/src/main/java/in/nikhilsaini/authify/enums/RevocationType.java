@@ -0,0 +1,6 @@
+package in.nikhilsaini.authify.enums;
+
+public enum RevocationType {
+    TOKEN,      // a single token, by jti
+    SUBJECT     // every token of a user issued before a point in time
+}
@@ -0,0 +1,26 @@
+package in.nikhilsaini.authify.enums;
+
+import java.util.Locale;
+
+public enum TransferFormat {
+    NDJSON("application/x-ndjson"),   // one JSON object per line
+    CSV("text/csv");                  // header row with the field names, then one row per user
+
+    private final String contentType;
+
+    TransferFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    public static TransferFormat of(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported format: " + name + " (use ndjson or csv)");
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package in.nikhilsaini.authify.exception;
+
+import lombok.Getter;
+
+// A failed send. Retryable failures (timeouts, 5xx, 429) are retried with backoff, the rest go straight to DEAD.
+// recipientRejected: the request was refused for its content, which may come down to a single recipient
+// (e.g. an invalid address), so a smaller batch without that recipient can still go through.
+@Getter
+public class EmailDeliveryException extends Exception {
+
+    private final boolean retryable;
+    private final boolean recipientRejected;
+
+    public EmailDeliveryException(String message, boolean retryable) {
+        this(message, retryable, false);
+    }
+
+    public EmailDeliveryException(String message, boolean retryable, boolean recipientRejected) {
+        super(message);
+        this.retryable = retryable;
+        this.recipientRejected = recipientRejected;
+    }
+
+    public EmailDeliveryException(String message, boolean retryable, Throwable cause) {
+        super(message, cause);
+        this.retryable = retryable;
+        this.recipientRejected = false;
+    }
+}
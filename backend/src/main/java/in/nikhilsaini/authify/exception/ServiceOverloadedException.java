@@ -0,0 +1,15 @@
+package in.nikhilsaini.authify.exception;
+
+import lombok.Getter;
+
+// Thrown when a bounded resource is saturated; mapped to 503 with a Retry-After header
+@Getter
+public class ServiceOverloadedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ServiceOverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
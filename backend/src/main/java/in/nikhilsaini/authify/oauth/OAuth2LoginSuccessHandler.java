@@ -1,10 +1,15 @@
 package in.nikhilsaini.authify.oauth;
 
+import in.nikhilsaini.authify.cache.KnownEmails;
+import in.nikhilsaini.authify.cache.UserCache;
+import in.nikhilsaini.authify.datasource.ReplicaRouting;
+import in.nikhilsaini.authify.dto.UserCredentials;
 import in.nikhilsaini.authify.entity.User;
 import in.nikhilsaini.authify.enums.AuthProvider;
 import in.nikhilsaini.authify.enums.Role;
 import in.nikhilsaini.authify.repository.UserRepository;
 import in.nikhilsaini.authify.security.JwtUtil;
+import in.nikhilsaini.authify.service.RefreshTokenService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
@@ -24,6 +29,10 @@ public class OAuth2LoginSuccessHandler  implements AuthenticationSuccessHandler
 
     private final JwtUtil jwtUtil;
     private final UserRepository userRepository;
+    private final UserCache userCache;
+    private final KnownEmails knownEmails;
+    private final RefreshTokenService refreshTokenService;
+    private final ReplicaRouting replicaRouting;
 
     @Override
     public void onAuthenticationSuccess(HttpServletRequest request, HttpServletResponse response , Authentication authentication) throws IOException
@@ -32,32 +41,35 @@ public class OAuth2LoginSuccessHandler  implements AuthenticationSuccessHandler
 
         String email = oAuth2User.getAttribute("email");
         String name  = oAuth2User.getAttribute("name");
-        User user = userRepository.findByEmail(email).orElse(null);
+        // decides whether to insert, a lagging replica would make that a duplicate
+        UserCredentials user = replicaRouting.onPrimary(() -> userRepository.findCredentialsByEmail(email)).orElse(null);
 
         if(user == null){
-            user = new User();
-            user.setEmail(email);
-            user.setName(name);
-            user.setRole(Role.USER);
-            user.setEmailVerified(true);
-            user.setProvider(AuthProvider.GOOGLE);
-            userRepository.save(user);
-
+            User created = new User();
+            created.setEmail(email);
+            created.setName(name);
+            created.setRole(Role.USER);
+            created.setEmailVerified(true);
+            created.setProvider(AuthProvider.GOOGLE);
+            userRepository.save(created);
+            userCache.invalidate(email);
+            knownEmails.add(email);
+            user = UserCredentials.of(created);
 
 
         }
-        String role = user.getRole() !=null ? user.getRole().name(): Role.USER.name();
+        String role = user.role().name();
 
-        String token = jwtUtil.generateToken(email,role);
-        String refreshToken = jwtUtil.generateRefreshToken(email);
+        String token = jwtUtil.generateToken(user);
+        String refreshToken = refreshTokenService.issue(user);
 
 
         // URL encode fields for safety
         String redirectURL = "http://localhost:5173/oauth2/redirect"
                 + "?token=" + URLEncoder.encode(token, StandardCharsets.UTF_8)
                 + "&refreshToken=" + URLEncoder.encode(refreshToken, StandardCharsets.UTF_8)
-                + "&name=" + URLEncoder.encode(user.getName(), StandardCharsets.UTF_8)
-                + "&email=" + URLEncoder.encode(user.getEmail(), StandardCharsets.UTF_8)
+                + "&name=" + URLEncoder.encode(user.name(), StandardCharsets.UTF_8)
+                + "&email=" + URLEncoder.encode(user.email(), StandardCharsets.UTF_8)
                 + "&role=" + URLEncoder.encode(role, StandardCharsets.UTF_8);
 
         response.sendRedirect(redirectURL);
@@ -0,0 +1,146 @@
+package in.nikhilsaini.authify.otp;
+
+import in.nikhilsaini.authify.shard.UserShard;
+import in.nikhilsaini.authify.shard.UserShards;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Deletes lapsed registrations from temp_user and clears the OTP columns on tbl_users that were written before
+// OtpStore existed.
+// Works in small batches: select the oldest expired keys through the expiry index, then delete / update exactly
+// those by primary key, each batch in its own short transaction, so no statement scans the table or holds
+// locks for long. The batch size adapts towards auth.cleanup.targetBatchTime (halved when a batch is slower,
+// doubled when it is well under), and after every batch the job pauses as long as the batch took, leaving at
+// least half the time to live traffic. A run stops when the backlog is drained or after auth.cleanup.maxRunTime.
+// With sharding the shards are done one after the other, in their own transactions, within the same run time.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExpiredOtpPurger {
+
+    private static final int MIN_BATCH_SIZE = 10;
+
+    private final UserShards userShards;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${auth.cleanup.batchSize:500}")
+    private int initialBatchSize;
+
+    @Value("${auth.cleanup.maxBatchSize:5000}")
+    private int maxBatchSize;
+
+    @Value("${auth.cleanup.targetBatchTime:100ms}")
+    private Duration targetBatchTime;
+
+    @Value("${auth.cleanup.maxRunTime:10s}")
+    private Duration maxRunTime;
+
+    // carried over between runs so the job starts at the size that last worked
+    private final AtomicInteger batchSize = new AtomicInteger();
+
+    private interface Batch {
+        // processes up to limit expired rows and returns how many it changed
+        int run(LocalDateTime now, int limit);
+    }
+
+    @PostConstruct
+    void init() {
+        batchSize.set(Math.max(MIN_BATCH_SIZE, Math.min(initialBatchSize, maxBatchSize)));
+        Gauge.builder("auth.cleanup.batch.size", batchSize, AtomicInteger::get).register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${auth.cleanup.interval:5m}")
+    void purge() {
+        long deadline = System.nanoTime() + maxRunTime.toNanos();
+        for (UserShard shard : userShards.all()) {
+            if (!purge(shard, deadline)) {
+                break;
+            }
+        }
+    }
+
+    // false if the run ran out of time on this shard
+    private boolean purge(UserShard shard, long deadline) {
+        boolean drained = purge(shard, "temp_user", deadline, (now, limit) -> {
+            List<String> emails = shard.tempUsers().findExpired(now, PageRequest.of(0, limit));
+            return emails.isEmpty() ? 0 : shard.tempUsers().deleteExpired(emails, now);
+        });
+        if (drained) {
+            drained = purge(shard, "users_otp", deadline, (now, limit) -> {
+                List<Long> ids = shard.users().findWithExpiredOtp(now, PageRequest.of(0, limit));
+                return ids.isEmpty() ? 0 : shard.users().clearOtp(ids);
+            });
+        }
+        if (drained) {
+            drained = purge(shard, "users_reset_otp", deadline, (now, limit) -> {
+                List<Long> ids = shard.users().findWithExpiredResetOtp(now, PageRequest.of(0, limit));
+                return ids.isEmpty() ? 0 : shard.users().clearResetOtp(ids);
+            });
+        }
+        return drained;
+    }
+
+    // false if the run ran out of time before this table was drained
+    private boolean purge(UserShard shard, String table, long deadline, Batch batch) {
+        long started = System.nanoTime();
+        long total = 0;
+        boolean drained = false;
+        while (System.nanoTime() < deadline) {
+            int limit = batchSize.get();
+            long batchStarted = System.nanoTime();
+            int changed = shard.transactionTemplate().execute(tx -> batch.run(LocalDateTime.now(), limit));
+            long elapsed = System.nanoTime() - batchStarted;
+            total += changed;
+            if (changed < limit) {
+                drained = true;
+                break;
+            }
+            // only full batches say anything about how long `limit` rows take
+            adapt(elapsed);
+            if (!pause(elapsed)) {
+                break;
+            }
+        }
+        meterRegistry.counter("auth.cleanup.purged", "table", table).increment(total);
+        Timer.builder("auth.cleanup.duration").tag("table", table).register(meterRegistry)
+                .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        if (total > 0) {
+            log.info("Purged {} expired rows from {} in {} ms", total, table,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        }
+        return drained;
+    }
+
+    private void adapt(long elapsedNanos) {
+        long target = targetBatchTime.toNanos();
+        if (elapsedNanos > target) {
+            batchSize.updateAndGet(size -> Math.max(MIN_BATCH_SIZE, size / 2));
+        } else if (elapsedNanos < target / 2) {
+            batchSize.updateAndGet(size -> Math.min(maxBatchSize, size * 2));
+        }
+    }
+
+    private static boolean pause(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package in.nikhilsaini.authify.otp;
+
+import in.nikhilsaini.authify.enums.OtpPurpose;
+import in.nikhilsaini.authify.util.TimingWheel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Codes live in a map on this node; nothing touches the DB.
+// Every code is also scheduled on a timing wheel that is advanced once per auth.otp.tick, so expired codes
+// are dropped in O(1) each instead of by scanning the map. verify() checks the deadline itself, the wheel only
+// reclaims memory.
+@Component
+@ConditionalOnProperty(name = "auth.otp.store", havingValue = "memory", matchIfMissing = true)
+@RequiredArgsConstructor
+public class InMemoryOtpStore implements OtpStore {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${auth.otp.ttl:10m}")
+    private Duration ttl;
+
+    @Value("${auth.otp.maxAttempts:5}")
+    private int maxAttempts;
+
+    @Value("${auth.otp.tick:1s}")
+    private Duration tick;
+
+    private record Key(OtpPurpose purpose, String email) {
+    }
+
+    private static final class Entry {
+        final Key key;
+        final byte[] digest;
+        final long expiresAtMillis;
+        int attempts;                          // guarded by the map's lock on this key
+        TimingWheel.Timeout<Entry> timeout;
+
+        Entry(Key key, byte[] digest, long expiresAtMillis) {
+            this.key = key;
+            this.digest = digest;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private TimingWheel<Entry> wheel;
+    private Counter expired;
+
+    @PostConstruct
+    void init() {
+        wheel = new TimingWheel<>(tick.toMillis(), System.currentTimeMillis());
+        expired = Counter.builder("auth.otp.expired").register(meterRegistry);
+        Gauge.builder("auth.otp.active", entries, ConcurrentHashMap::size).register(meterRegistry);
+    }
+
+    @Override
+    public String issue(OtpPurpose purpose, String email) {
+        String code = OtpCodes.generate();
+        long expiresAt = System.currentTimeMillis() + ttl.toMillis();
+        Entry entry = new Entry(key(purpose, email), OtpCodes.digest(purpose, email, code), expiresAt);
+        // lock order is always map key -> wheel; the wheel never calls back into the map
+        entries.compute(entry.key, (key, previous) -> {
+            if (previous != null) {
+                wheel.cancel(previous.timeout);
+            }
+            entry.timeout = wheel.schedule(entry, expiresAt);
+            return entry;
+        });
+        return code;
+    }
+
+    @Override
+    public Result verify(OtpPurpose purpose, String email, String code) {
+        byte[] presented = OtpCodes.digest(purpose, email, code);
+        long now = System.currentTimeMillis();
+        Result[] result = {Result.NOT_FOUND};
+        entries.computeIfPresent(key(purpose, email), (key, entry) -> {
+            if (entry.expiresAtMillis <= now) {
+                result[0] = Result.EXPIRED;
+            } else if (OtpCodes.matches(entry.digest, presented)) {
+                result[0] = Result.VALID;
+            } else if (++entry.attempts >= maxAttempts) {
+                result[0] = Result.TOO_MANY_ATTEMPTS;
+            } else {
+                result[0] = Result.INVALID;
+                return entry;
+            }
+            wheel.cancel(entry.timeout);
+            return null;
+        });
+        meterRegistry.counter("auth.otp.verify", "result", result[0].name().toLowerCase(Locale.ROOT)).increment();
+        return result[0];
+    }
+
+    @Override
+    public void remove(OtpPurpose purpose, String email) {
+        entries.computeIfPresent(key(purpose, email), (key, entry) -> {
+            wheel.cancel(entry.timeout);
+            return null;
+        });
+    }
+
+    @Scheduled(fixedRateString = "${auth.otp.tick:1s}")
+    void expire() {
+        for (Entry entry : wheel.advance(System.currentTimeMillis())) {
+            // only if the code hasn't been re-issued since
+            if (entries.remove(entry.key, entry)) {
+                expired.increment();
+            }
+        }
+    }
+
+    private static Key key(OtpPurpose purpose, String email) {
+        return new Key(purpose, OtpCodes.normalize(email));
+    }
+}
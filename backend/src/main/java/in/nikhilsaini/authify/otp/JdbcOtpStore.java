@@ -0,0 +1,96 @@
+package in.nikhilsaini.authify.otp;
+
+import in.nikhilsaini.authify.entity.OtpCode;
+import in.nikhilsaini.authify.enums.OtpPurpose;
+import in.nikhilsaini.authify.repository.OtpCodeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Optional;
+
+// Codes in tbl_otp_codes, so a code issued by one node verifies on any other.
+// One row per (purpose, email), overwritten on re-issue; a guess locks the row so attempts are counted exactly.
+// Expired rows are deleted in the background, verify() checks the deadline itself.
+@Component
+@ConditionalOnProperty(name = "auth.otp.store", havingValue = "jdbc")
+@RequiredArgsConstructor
+public class JdbcOtpStore implements OtpStore {
+
+    private final OtpCodeRepository otpCodeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${auth.otp.ttl:10m}")
+    private Duration ttl;
+
+    @Value("${auth.otp.maxAttempts:5}")
+    private int maxAttempts;
+
+    @Override
+    @Transactional
+    public String issue(OtpPurpose purpose, String email) {
+        String code = OtpCodes.generate();
+        otpCodeRepository.save(OtpCode.builder()
+                .id(id(purpose, email))
+                .digest(HexFormat.of().formatHex(OtpCodes.digest(purpose, email, code)))
+                .expiresAt(Instant.now().plus(ttl))
+                .attempts(0)
+                .build());
+        return code;
+    }
+
+    @Override
+    @Transactional
+    public Result verify(OtpPurpose purpose, String email, String code) {
+        Result result = check(purpose, email, code);
+        meterRegistry.counter("auth.otp.verify", "result", result.name().toLowerCase(Locale.ROOT)).increment();
+        return result;
+    }
+
+    private Result check(OtpPurpose purpose, String email, String code) {
+        Optional<OtpCode> found = otpCodeRepository.findForUpdate(id(purpose, email));
+        if (found.isEmpty()) {
+            return Result.NOT_FOUND;
+        }
+        OtpCode stored = found.get();
+        if (!stored.getExpiresAt().isAfter(Instant.now())) {
+            otpCodeRepository.delete(stored);
+            return Result.EXPIRED;
+        }
+        if (OtpCodes.matches(HexFormat.of().parseHex(stored.getDigest()), OtpCodes.digest(purpose, email, code))) {
+            otpCodeRepository.delete(stored);
+            return Result.VALID;
+        }
+        stored.setAttempts(stored.getAttempts() + 1);
+        if (stored.getAttempts() >= maxAttempts) {
+            otpCodeRepository.delete(stored);
+            return Result.TOO_MANY_ATTEMPTS;
+        }
+        return Result.INVALID;
+    }
+
+    @Override
+    @Transactional
+    public void remove(OtpPurpose purpose, String email) {
+        otpCodeRepository.deleteById(id(purpose, email));
+    }
+
+    @Scheduled(fixedDelayString = "${auth.otp.cleanupInterval:10m}")
+    void deleteExpired() {
+        transactionTemplate.executeWithoutResult(tx -> otpCodeRepository.deleteExpired(Instant.now()));
+    }
+
+    private static String id(OtpPurpose purpose, String email) {
+        return purpose.name() + ':' + OtpCodes.normalize(email);
+    }
+}
@@ -0,0 +1,41 @@
+package in.nikhilsaini.authify.otp;
+
+import in.nikhilsaini.authify.enums.OtpPurpose;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Locale;
+
+// Code generation and hashing shared by the OtpStore backends
+final class OtpCodes {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private OtpCodes() {
+    }
+
+    static String generate() {
+        return String.valueOf(100000 + RANDOM.nextInt(900000));
+    }
+
+    static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // bound to purpose and email so a stored digest is useless for any other code slot
+    static byte[] digest(OtpPurpose purpose, String email, String code) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return sha256.digest((purpose.name() + ':' + normalize(email) + ':' + code).getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // MessageDigest.isEqual doesn't stop at the first differing byte
+    static boolean matches(byte[] expected, byte[] presented) {
+        return MessageDigest.isEqual(expected, presented);
+    }
+}
@@ -0,0 +1,20 @@
+package in.nikhilsaini.authify.otp;
+
+import in.nikhilsaini.authify.enums.OtpPurpose;
+
+// Outstanding one-time codes, one per (purpose, email).
+// Codes are held only as a digest and compared in constant time. The first correct verify() consumes the code;
+// after auth.otp.maxAttempts wrong guesses it is dropped and a new one has to be requested.
+// auth.otp.store picks the backend: memory (default, single node or sticky sessions) or jdbc (shared table,
+// for several nodes behind a plain load balancer).
+public interface OtpStore {
+
+    enum Result { VALID, INVALID, EXPIRED, TOO_MANY_ATTEMPTS, NOT_FOUND }
+
+    // generates a code valid for auth.otp.ttl, replacing any outstanding one and its attempt count
+    String issue(OtpPurpose purpose, String email);
+
+    Result verify(OtpPurpose purpose, String email, String code);
+
+    void remove(OtpPurpose purpose, String email);
+}
@@ -0,0 +1,53 @@
+package in.nikhilsaini.authify.repository;
+
+import in.nikhilsaini.authify.entity.EmailOutbox;
+import in.nikhilsaini.authify.enums.EmailType;
+import in.nikhilsaini.authify.enums.OutboxStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    // SELECT ... FOR UPDATE SKIP LOCKED: concurrent dispatchers on other nodes get disjoint batches
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select e from EmailOutbox e where e.type = :type and e.status = :status and e.nextAttemptAt <= :now order by e.id")
+    List<EmailOutbox> findDue(@Param("type") EmailType type, @Param("status") OutboxStatus status,
+                              @Param("now") Instant now, Pageable page);
+
+    long countByStatus(OutboxStatus status);
+
+    @Modifying
+    @Query("update EmailOutbox e set e.status = in.nikhilsaini.authify.enums.OutboxStatus.SENT, e.sentAt = :sentAt, " +
+            "e.payload = null, e.lastError = null where e.id in :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("sentAt") Instant sentAt);
+
+    @Modifying
+    @Query("update EmailOutbox e set e.nextAttemptAt = :nextAttemptAt, e.lastError = :error where e.id = :id")
+    int reschedule(@Param("id") Long id, @Param("nextAttemptAt") Instant nextAttemptAt, @Param("error") String error);
+
+    // hands claimed rows back untried (breaker open, bulkhead full); the claim doesn't count as an attempt
+    @Modifying
+    @Query("update EmailOutbox e set e.nextAttemptAt = :nextAttemptAt, e.attempts = e.attempts - 1 where e.id in :ids")
+    int release(@Param("ids") Collection<Long> ids, @Param("nextAttemptAt") Instant nextAttemptAt);
+
+    @Modifying
+    @Query("update EmailOutbox e set e.status = in.nikhilsaini.authify.enums.OutboxStatus.DEAD, e.payload = null, " +
+            "e.lastError = :error where e.id = :id")
+    int markDead(@Param("id") Long id, @Param("error") String error);
+
+    @Modifying
+    @Query("delete from EmailOutbox e where e.status = in.nikhilsaini.authify.enums.OutboxStatus.SENT and e.sentAt < :cutoff")
+    int deleteSentBefore(@Param("cutoff") Instant cutoff);
+}
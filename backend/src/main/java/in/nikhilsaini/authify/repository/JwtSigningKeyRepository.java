@@ -0,0 +1,29 @@
+package in.nikhilsaini.authify.repository;
+
+import in.nikhilsaini.authify.entity.JwtSigningKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface JwtSigningKeyRepository extends JpaRepository<JwtSigningKey, String> {
+
+    @Query("select k from JwtSigningKey k where k.retiresAt is null or k.retiresAt > :now order by k.createdAt, k.kid")
+    List<JwtSigningKey> findUnretired(@Param("now") Instant now);
+
+    // 0 when another node already rotated this key out
+    @Modifying
+    @Query("update JwtSigningKey k set k.retiresAt = :retiresAt where k.kid = :kid and k.retiresAt is null")
+    int retire(@Param("kid") String kid, @Param("retiresAt") Instant retiresAt);
+
+    @Modifying
+    @Query("update JwtSigningKey k set k.retiresAt = :retiresAt where k.retiresAt is null")
+    int retireAll(@Param("retiresAt") Instant retiresAt);
+
+    @Modifying
+    @Query("delete from JwtSigningKey k where k.retiresAt < :cutoff")
+    int deleteRetired(@Param("cutoff") Instant cutoff);
+}
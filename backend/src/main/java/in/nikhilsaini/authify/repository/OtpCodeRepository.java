@@ -0,0 +1,24 @@
+package in.nikhilsaini.authify.repository;
+
+import in.nikhilsaini.authify.entity.OtpCode;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface OtpCodeRepository extends JpaRepository<OtpCode, String> {
+
+    // serializes concurrent guesses so the attempt count can't be raced past
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from OtpCode c where c.id = :id")
+    Optional<OtpCode> findForUpdate(@Param("id") String id);
+
+    @Modifying
+    @Query("delete from OtpCode c where c.expiresAt < :cutoff")
+    int deleteExpired(@Param("cutoff") Instant cutoff);
+}
@@ -0,0 +1,32 @@
+package in.nikhilsaini.authify.repository;
+
+import in.nikhilsaini.authify.entity.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, String> {
+
+    // one-time use: 1 if this call spent the token, 0 if it is unknown, expired, revoked or already spent (by
+    // another node, the flush takes that for reuse)
+    @Modifying
+    @Query("update RefreshToken r set r.usedAt = :now where r.id = :id and r.usedAt is null and r.revoked = false"
+            + " and r.expiresAt > :now")
+    int spend(@Param("id") String id, @Param("now") Instant now);
+
+    @Query("select distinct r.familyId from RefreshToken r where r.familyId in :familyIds and r.revoked = true")
+    List<String> findRevokedFamilies(@Param("familyIds") Collection<String> familyIds);
+
+    @Modifying
+    @Query("update RefreshToken r set r.revoked = true where r.familyId in :familyIds")
+    int revokeFamilies(@Param("familyIds") Collection<String> familyIds);
+
+    @Modifying
+    @Query("delete from RefreshToken r where r.expiresAt < :cutoff")
+    int deleteExpired(@Param("cutoff") Instant cutoff);
+}
@@ -2,9 +2,29 @@ package in.nikhilsaini.authify.repository;
 
 
 import in.nikhilsaini.authify.entity.TempUser;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 @Repository
 public interface TempUserRepository extends JpaRepository<TempUser, String> {
+
+    // oldest first, an index range scan on otpExpiry
+    @Query("select t.email from TempUser t where t.otpExpiry < :now order by t.otpExpiry")
+    List<String> findExpired(@Param("now") LocalDateTime now, Pageable page);
+
+    // re-checks the expiry so a registration renewed since the select survives
+    @Modifying
+    @Query("delete from TempUser t where t.email in :emails and t.otpExpiry < :now")
+    int deleteExpired(@Param("emails") List<String> emails, @Param("now") LocalDateTime now);
+
+    // primary-key order from just after the given email, for walking a shard while resharding
+    @Query("select t.email from TempUser t where t.email > :afterEmail order by t.email")
+    List<String> findEmailsAfter(@Param("afterEmail") String afterEmail, Pageable page);
 }
@@ -0,0 +1,26 @@
+package in.nikhilsaini.authify.repository;
+
+import in.nikhilsaini.authify.entity.TokenRevocation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface TokenRevocationRepository extends JpaRepository<TokenRevocation, Long> {
+
+    // (createdAt, id) order from just after the given position, for startup replay and for tailing entries
+    // written by other nodes; range scan on idx_revocation_created
+    @Query("select r from TokenRevocation r"
+            + " where (r.createdAt > :createdAt or (r.createdAt = :createdAt and r.id > :afterId))"
+            + " and r.expiresAt > :now order by r.createdAt, r.id")
+    List<TokenRevocation> findCreatedAfter(@Param("createdAt") Instant createdAt, @Param("afterId") long afterId,
+                                           @Param("now") Instant now, Pageable page);
+
+    @Modifying
+    @Query("delete from TokenRevocation r where r.expiresAt < :cutoff")
+    int deleteExpired(@Param("cutoff") Instant cutoff);
+}
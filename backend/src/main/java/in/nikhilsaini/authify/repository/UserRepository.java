@@ -1,14 +1,78 @@
 package in.nikhilsaini.authify.repository;
 
 import in.nikhilsaini.authify.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
 
+    // read-only so that, with replicas configured, they can be served by one (query methods get no transaction
+    // from Spring Data by default); inside a read-write transaction they join it and stay on the primary
+    // findByEmail is a query, so it never answers from the second-level cache; read-modify-write paths rely on that
+    @Transactional(readOnly = true)
     Optional <User> findByEmail(String email);  // For Login and Verification
+    @Transactional(readOnly = true)
     boolean existsByEmail(String email); // Prevent Duplicate Registration
-    Optional<User> findByOtp(String otp);
-    Optional<User>findByResetOtp(String resetOtp);
+
+    // re-hash on login, without loading the entity. By email, which unlike the id is unique across shards. Like
+    // every bulk update here, it makes Hibernate drop the User second-level cache regions when those are on
+    @Transactional
+    @Modifying
+    @Query("update User u set u.password = :password, u.updatedAt = current_timestamp where u.email = :email")
+    int updatePassword(@Param("email") String email, @Param("password") String password);
+
+    // a user moved to another shard by the Resharder keeps their registration time
+    @Transactional
+    @Modifying
+    @Query("update User u set u.createdAt = :createdAt where u.email = :email")
+    int restoreCreatedAt(@Param("email") String email, @Param("createdAt") Timestamp createdAt);
+
+    interface IdAndEmail {
+        Long getId();
+        String getEmail();
+        Timestamp getCreatedAt();
+    }
+
+    // primary-key order, for loading KnownEmails a page at a time
+    @Query("select u.id as id, u.email as email, u.createdAt as createdAt from User u where u.id > :afterId order by u.id")
+    List<IdAndEmail> findEmailsAfter(@Param("afterId") long afterId, Pageable page);
+
+    // (createdAt, id) order from just after the given position, for tailing KnownEmails; range scan on idx_users_created_at
+    @Query("select u.id as id, u.email as email, u.createdAt as createdAt from User u"
+            + " where u.createdAt > :createdAt or (u.createdAt = :createdAt and u.id > :afterId)"
+            + " order by u.createdAt, u.id")
+    List<IdAndEmail> findEmailsCreatedAfter(@Param("createdAt") Timestamp createdAt, @Param("afterId") long afterId,
+                                            Pageable page);
+
+    // which of these are taken, for bulk imports; one lookup on the unique email index per chunk
+    @Query("select u.email from User u where u.email in :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    @Query("select coalesce(max(u.id), 0) from User u")
+    long findMaxId();
+
+    // stale OTP columns, oldest first, index range scans on the expiry columns
+    @Query("select u.id from User u where u.otpExpiry < :now order by u.otpExpiry")
+    List<Long> findWithExpiredOtp(@Param("now") LocalDateTime now, Pageable page);
+
+    @Query("select u.id from User u where u.resetOtpExpiry < :now order by u.resetOtpExpiry")
+    List<Long> findWithExpiredResetOtp(@Param("now") LocalDateTime now, Pageable page);
+
+    @Modifying
+    @Query("update User u set u.otp = null, u.otpGeneratedAt = null, u.otpExpiry = null where u.id in :ids")
+    int clearOtp(@Param("ids") List<Long> ids);
+
+    @Modifying
+    @Query("update User u set u.resetOtp = null, u.resetOtpExpiry = null where u.id in :ids")
+    int clearResetOtp(@Param("ids") List<Long> ids);
 }
@@ -0,0 +1,14 @@
+package in.nikhilsaini.authify.repository;
+
+import in.nikhilsaini.authify.dto.UserCredentials;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+public interface UserRepositoryCustom {
+
+    // the auth hot path: only the columns login / refresh / authentication use, not managed. One lookup on the
+    // unique email index, or with the second-level cache on, the cached User by its natural id
+    @Transactional(readOnly = true)
+    Optional<UserCredentials> findCredentialsByEmail(String email);
+}
@@ -0,0 +1,36 @@
+package in.nikhilsaini.authify.repository;
+
+import in.nikhilsaini.authify.dto.UserCredentials;
+import in.nikhilsaini.authify.entity.User;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.util.Optional;
+
+@RequiredArgsConstructor
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+    private static final String CREDENTIALS = "select new in.nikhilsaini.authify.dto.UserCredentials(u.id, u.name,"
+            + " u.email, u.password, u.role, u.provider, u.emailVerified, u.accountNonLocked, u.tokenVersion)"
+            + " from User u where u.email = :email";
+
+    private final EntityManager entityManager;
+
+    @Value("${auth.cache.l2.enabled:false}")
+    private boolean secondLevelCache;
+
+    @Override
+    public Optional<UserCredentials> findCredentialsByEmail(String email) {
+        if (secondLevelCache) {
+            // email -> id from the natural-id region, the state from the entity region; the DB only on a miss
+            return entityManager.unwrap(Session.class).bySimpleNaturalId(User.class).loadOptional(email)
+                    .map(UserCredentials::of);
+        }
+        return entityManager.createQuery(CREDENTIALS, UserCredentials.class)
+                .setParameter("email", email)
+                .getResultStream()
+                .findFirst();
+    }
+}
@@ -0,0 +1,27 @@
+package in.nikhilsaini.authify.security;
+
+import in.nikhilsaini.authify.dto.UserCredentials;
+
+// Security-relevant account state carried in the "st" claim so the filter can trust a token without a DB lookup.
+// Packed into one number: tokenVersion << 2 | locked << 1 | verified
+public record AccountState(int tokenVersion, boolean emailVerified, boolean locked) {
+
+    private static final long VERIFIED_BIT = 1L;
+    private static final long LOCKED_BIT = 1L << 1;
+
+    public static AccountState of(UserCredentials user) {
+        return new AccountState(user.tokenVersion(), user.emailVerified(), !user.accountNonLocked());
+    }
+
+    public static AccountState decode(long packed) {
+        return new AccountState((int) (packed >>> 2), (packed & VERIFIED_BIT) != 0, (packed & LOCKED_BIT) != 0);
+    }
+
+    public long encode() {
+        return ((long) tokenVersion << 2) | (locked ? LOCKED_BIT : 0) | (emailVerified ? VERIFIED_BIT : 0);
+    }
+
+    public boolean isUsable() {
+        return emailVerified && !locked;
+    }
+}
@@ -0,0 +1,41 @@
+package in.nikhilsaini.authify.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// Remembers users whose token version changed recently (password reset, lock/unlock) so stateless
+// authentication can reject tokens issued before the change without asking the DB.
+// An entry only has to outlive the access tokens issued before it, so it is dropped after accessTokenExpiration.
+@Component
+public class AccountStateRegistry {
+
+    @Value("${auth.jwt.accessTokenExpiration}")
+    private Long accessTokenExpiration;
+
+    private final ConcurrentHashMap<String, Change> changes = new ConcurrentHashMap<>();
+
+    private record Change(int tokenVersion, long changedAt) {
+    }
+
+    public void recordChange(String email, int newTokenVersion) {
+        changes.merge(email, new Change(newTokenVersion, System.currentTimeMillis()),
+                (old, now) -> now.tokenVersion() >= old.tokenVersion() ? now : old);
+    }
+
+    public boolean isCurrent(String email, AccountState state) {
+        if (!state.isUsable()) {
+            return false;
+        }
+        Change change = changes.get(email);
+        return change == null || state.tokenVersion() >= change.tokenVersion();
+    }
+
+    @Scheduled(fixedDelayString = "${auth.jwt.accessTokenExpiration}")
+    void purgeExpired() {
+        long cutoff = System.currentTimeMillis() - accessTokenExpiration;
+        changes.values().removeIf(change -> change.changedAt() < cutoff);
+    }
+}
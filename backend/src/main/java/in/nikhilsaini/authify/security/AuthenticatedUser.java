@@ -0,0 +1,20 @@
+package in.nikhilsaini.authify.security;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+// Principal put in the SecurityContext, either loaded from the DB (strict mode) or rebuilt from token claims (stateless mode)
+@Getter
+public class AuthenticatedUser extends User {
+
+    private final int tokenVersion;
+
+    public AuthenticatedUser(String email, String password, boolean enabled, boolean accountNonLocked,
+                             int tokenVersion, Collection<? extends GrantedAuthority> authorities) {
+        super(email, password, enabled, true, true, accountNonLocked, authorities);
+        this.tokenVersion = tokenVersion;
+    }
+}
@@ -1,17 +1,17 @@
 package in.nikhilsaini.authify.security;
 
-import in.nikhilsaini.authify.repository.UserRepository;
-
 import in.nikhilsaini.authify.service.CustomUserDetailsService;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
-import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -24,6 +24,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final CustomUserDetailsService customUserDetailsService;
+    private final AccountStateRegistry accountStateRegistry;
+    private final TokenRevocationList tokenRevocationList;
+
+    // "stateless" builds the authentication from the token claims, "strict" loads the user from the DB on every request
+    @Value("${auth.jwt.authMode:stateless}")
+    private String authMode;
 
     @Override
     protected void doFilterInternal(
@@ -39,35 +45,40 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
-        // Extract token
+        // Extract token and verify it once (signature + expiry)
         String token = authHeader.substring(7);
-        String userEmail = null;
+        VerifiedToken verified;
         try {
-            jwtUtil.extractEmail(token);
-        } catch(Exception e){
+            verified = jwtUtil.verify(token);
+        } catch(JwtException | IllegalArgumentException e){
             // invalid Token -> let the request continue without authentication
             filterChain.doFilter(request,response);
             return;
         }
 
-        // ... checks if user is not authenticated yet;
+        // revoked (logout, admin revoke, password reset) -> no authentication, no DB round trip
+        if(tokenRevocationList.isRevoked(verified)){
+            filterChain.doFilter(request, response);
+            return;
+        }
 
-        if(userEmail != null && SecurityContextHolder.getContext().getAuthentication()== null){
-            // fetch user from DB
-            UserDetails userDetails = customUserDetailsService.loadUserByUsername(userEmail);
+        // ... checks if user is not authenticated yet;
 
-            // Validate Token
-            if(jwtUtil.isTokenValid(token , userDetails.getUsername())) {
+        if(SecurityContextHolder.getContext().getAuthentication()== null){
+            AuthenticatedUser user = resolveUser(verified);
+            if(user == null){
+                filterChain.doFilter(request, response);
+                return;
+            }
 
-                // create authentication object
+            // create authentication object
 
-                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken( userDetails , null , userDetails.getAuthorities());
+            UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken( user , null , user.getAuthorities());
 
-                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
-                // save auth in context
-                SecurityContextHolder.getContext().setAuthentication(authToken);
-            }
+            // save auth in context
+            SecurityContextHolder.getContext().setAuthentication(authToken);
         }
 
         filterChain.doFilter(request, response);
@@ -76,6 +87,38 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     }
 
+    // returns null when the token must not authenticate the request
+    private AuthenticatedUser resolveUser(VerifiedToken verified) {
+        // refresh tokens only buy new tokens at /auth/refresh-token, they never authenticate a request
+        if(!verified.isAccessToken()){
+            return null;
+        }
+        AccountState state = verified.accountState();
 
+        // stateless: everything needed is in the verified claims, no DB round trip
+        // tokens issued before the "st" claim existed still go through the DB
+        if(!"strict".equalsIgnoreCase(authMode) && state != null){
+            if(!accountStateRegistry.isCurrent(verified.subject(), state)){
+                return null;
+            }
+            return new AuthenticatedUser(verified.subject(), "", true, true, state.tokenVersion(),
+                    AuthorityUtils.createAuthorityList("ROLE_" + verified.role()));
+        }
+
+        // strict: fetch user from DB
+        AuthenticatedUser user;
+        try {
+            user = customUserDetailsService.loadUserByUsername(verified.subject());
+        } catch (UsernameNotFoundException e) {
+            return null;
+        }
+        if(!user.isEnabled() || !user.isAccountNonLocked()){
+            return null;
+        }
+        if(state != null && state.tokenVersion() < user.getTokenVersion()){
+            return null;
+        }
+        return user;
+    }
 
 }
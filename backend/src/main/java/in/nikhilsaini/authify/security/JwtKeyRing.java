@@ -0,0 +1,357 @@
+package in.nikhilsaini.authify.security;
+
+import in.nikhilsaini.authify.datasource.ReplicaRouting;
+import in.nikhilsaini.authify.entity.JwtSigningKey;
+import in.nikhilsaini.authify.repository.JwtSigningKeyRepository;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.io.Encoders;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SecureDigestAlgorithm;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+// Signing keys for JwtUtil.
+// HS256 (default) signs with auth.jwt.secret. RS256 / ES256 / EdDSA sign with a key pair kept in tbl_jwt_keys,
+// which every node loads and rotates from, so any node verifies what another one signed. The pair is rotated
+// every auth.jwt.rotationInterval; a retired key keeps verifying for auth.jwt.rotationOverlap so tokens it
+// signed stay valid, and its public half stays in the JWKS until then.
+// Tokens carry the key id in the "kid" header. Tokens without one are checked against the HS256 secret, which
+// in asymmetric mode is only accepted for rotationOverlap after the switch.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class JwtKeyRing extends LocatorAdapter<Key> {
+
+    private static final String SECRET_KID = "hs256";
+    // an unknown kid is usually a key another node has just rotated in, the DB is asked at most this often
+    private static final Duration RELOAD_THROTTLE = Duration.ofSeconds(5);
+    private static final int GCM_IV_LENGTH = 12;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final JwtSigningKeyRepository keyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ReplicaRouting replicaRouting;
+
+    @Value("${auth.jwt.secret}")
+    private String secret;
+
+    @Value("${auth.jwt.algorithm:HS256}")
+    private String algorithm;
+
+    @Value("${auth.jwt.rotationInterval:1d}")
+    private Duration rotationInterval;
+
+    // must cover the longest token lifetime (refresh tokens)
+    @Value("${auth.jwt.rotationOverlap:7d}")
+    private Duration rotationOverlap;
+
+    public record SigningKey(String kid, Key signingKey, Key verificationKey, PublicKey publicKey,
+                             SecureDigestAlgorithm<Key, Key> algorithm, Instant createdAt, Instant retiresAt) {
+    }
+
+    // everything readers need, swapped atomically on rotation
+    private record Snapshot(SigningKey active, Map<String, SigningKey> byKid, String jwksJson, String etag) {
+    }
+
+    private Key hmac;
+    private SecretKey sealingKey;
+    private volatile Snapshot snapshot;
+    private volatile Instant lastReload = Instant.EPOCH;
+
+    @PostConstruct
+    void init() {
+        byte[] keyBytes = Decoders.BASE64.decode(secret);
+        hmac = Keys.hmacShaKeyFor(keyBytes);
+
+        if (isSymmetric()) {
+            SigningKey secretKey = secretKey(Instant.MAX);
+            publish(secretKey, List.of(secretKey));
+        } else {
+            sealingKey = new SecretKeySpec(sha256("authify-jwt-keys".getBytes(StandardCharsets.UTF_8), keyBytes), "AES");
+            rotateIfDue();
+            if (snapshot == null) {
+                throw new IllegalStateException("No JWT signing key for auth.jwt.algorithm=" + algorithm);
+            }
+        }
+    }
+
+    public boolean isSymmetric() {
+        return "HS256".equalsIgnoreCase(algorithm);
+    }
+
+    public SigningKey activeKey() {
+        return snapshot.active();
+    }
+
+    public String jwksJson() {
+        return snapshot.jwksJson();
+    }
+
+    public String jwksEtag() {
+        return snapshot.etag();
+    }
+
+    @Override
+    protected Key locate(JwsHeader header) {
+        String kid = header.getKeyId();
+        SigningKey key = snapshot.byKid().get(kid == null ? SECRET_KID : kid);
+        if (key == null && kid != null && !isSymmetric()) {
+            key = reloadFor(kid);
+        }
+        if (key == null || key.retiresAt().isBefore(Instant.now())) {
+            throw new JwtException(kid == null ? "Token without a key id" : "Unknown or retired signing key: " + kid);
+        }
+        return key.verificationKey();
+    }
+
+    private synchronized SigningKey reloadFor(String kid) {
+        SigningKey key = snapshot.byKid().get(kid);
+        Instant now = Instant.now();
+        if (key == null && lastReload.plus(RELOAD_THROTTLE).isBefore(now)) {
+            publish(load(now), now);
+            key = snapshot.byKid().get(kid);
+        }
+        return key;
+    }
+
+    @Scheduled(fixedDelayString = "${auth.jwt.rotationCheckInterval:1m}")
+    synchronized void rotateIfDue() {
+        if (isSymmetric()) {
+            return;
+        }
+        Instant now = Instant.now();
+        List<JwtSigningKey> rows = load(now);
+        JwtSigningKey active = active(rows);
+        if (active == null || active.getCreatedAt().plus(rotationInterval).isBefore(now)) {
+            if (rotate(active, now)) {
+                log.info("Rotated JWT signing key");
+            }
+            rows = load(now);
+        }
+        transactionTemplate.executeWithoutResult(tx -> keyRepository.deleteRetired(now));
+        publish(rows, now);
+    }
+
+    // the conditional retire makes exactly one node rotate a given key; the others pick up its successor
+    private boolean rotate(JwtSigningKey previous, Instant now) {
+        JwtSigningKey next = generate(now);
+        Instant retiresAt = now.plus(rotationOverlap);
+        return Boolean.TRUE.equals(transactionTemplate.execute(tx -> {
+            if (previous != null && keyRepository.retire(previous.getKid(), retiresAt) == 0) {
+                return false;
+            }
+            // keys of a previously configured algorithm, or a second first key from a node that started alongside
+            keyRepository.retireAll(retiresAt);
+            keyRepository.save(next);
+            return true;
+        }));
+    }
+
+    private List<JwtSigningKey> load(Instant now) {
+        lastReload = now;
+        // a replica may not have a key another node has just created
+        return replicaRouting.onPrimary(() -> keyRepository.findUnretired(now));
+    }
+
+    // the newest key of the configured algorithm that hasn't been retired
+    private JwtSigningKey active(List<JwtSigningKey> rows) {
+        JwtSigningKey active = null;
+        for (JwtSigningKey row : rows) {
+            if (row.getRetiresAt() == null && row.getAlgorithm().equalsIgnoreCase(algorithm)) {
+                active = row;
+            }
+        }
+        return active;
+    }
+
+    private void publish(List<JwtSigningKey> rows, Instant now) {
+        JwtSigningKey activeRow = active(rows);
+        if (activeRow == null) {
+            log.warn("No active JWT signing key in tbl_jwt_keys, keeping the current ones");
+            return;
+        }
+        Map<String, SigningKey> known = snapshot != null ? snapshot.byKid() : Map.of();
+        SigningKey active = null;
+        List<SigningKey> others = new ArrayList<>();
+        for (JwtSigningKey row : rows) {
+            SigningKey key = known.containsKey(row.getKid()) ? withRetiresAt(known.get(row.getKid()), row) : open(row);
+            if (key == null) {
+                continue;
+            }
+            if (row == activeRow) {
+                active = key;
+            } else {
+                others.add(key);
+            }
+        }
+        if (active == null) {
+            return;
+        }
+        // tokens signed with the secret before switching to this algorithm keep verifying for the overlap
+        Instant secretRetiresAt = rows.get(0).getCreatedAt().plus(rotationOverlap);
+        if (secretRetiresAt.isAfter(now)) {
+            others.add(secretKey(secretRetiresAt));
+        }
+        publish(active, others);
+    }
+
+    private SigningKey secretKey(Instant retiresAt) {
+        return new SigningKey(SECRET_KID, hmac, hmac, null, alg(Jwts.SIG.HS256), Instant.now(), retiresAt);
+    }
+
+    private static SigningKey withRetiresAt(SigningKey key, JwtSigningKey row) {
+        Instant retiresAt = row.getRetiresAt() != null ? row.getRetiresAt() : Instant.MAX;
+        return new SigningKey(key.kid(), key.signingKey(), key.verificationKey(), key.publicKey(),
+                key.algorithm(), key.createdAt(), retiresAt);
+    }
+
+    private void publish(SigningKey active, List<SigningKey> others) {
+        Map<String, SigningKey> byKid = new LinkedHashMap<>();
+        byKid.put(active.kid(), active);
+        others.forEach(k -> byKid.putIfAbsent(k.kid(), k));
+
+        String keys = byKid.values().stream()
+                .filter(k -> k.publicKey() != null)
+                .map(k -> Jwks.json(Jwks.builder().key(k.publicKey())
+                        .id(k.kid())
+                        .algorithm(k.algorithm().getId())
+                        .publicKeyUse("sig")
+                        .build()))
+                .collect(Collectors.joining(","));
+        String jwksJson = "{\"keys\":[" + keys + "]}";
+        String etag = "\"" + fingerprint(jwksJson.getBytes(StandardCharsets.UTF_8)) + "\"";
+        snapshot = new Snapshot(active, Map.copyOf(byKid), jwksJson, etag);
+    }
+
+    private JwtSigningKey generate(Instant now) {
+        KeyPair pair = switch (algorithm.toUpperCase()) {
+            case "RS256" -> Jwts.SIG.RS256.keyPair().build();
+            case "ES256" -> Jwts.SIG.ES256.keyPair().build();
+            case "EDDSA" -> Jwks.CRV.Ed25519.keyPair().build();
+            default -> throw new IllegalStateException("Unsupported auth.jwt.algorithm: " + algorithm);
+        };
+        String kid = UUID.randomUUID().toString();
+        return JwtSigningKey.builder()
+                .kid(kid)
+                .algorithm(algOf(algorithm).getId())
+                .privateKey(Encoders.BASE64.encode(seal(kid, pair.getPrivate().getEncoded())))
+                .publicKey(Encoders.BASE64.encode(pair.getPublic().getEncoded()))
+                .createdAt(now)
+                .build();
+    }
+
+    // null if the row can't be read with this node's secret, e.g. after auth.jwt.secret was changed
+    private SigningKey open(JwtSigningKey row) {
+        try {
+            SecureDigestAlgorithm<Key, Key> alg = algOf(row.getAlgorithm());
+            KeyFactory factory = KeyFactory.getInstance(keyFamily(row.getAlgorithm()));
+            byte[] sealed = Decoders.BASE64.decode(row.getPrivateKey());
+            PrivateKey privateKey = factory.generatePrivate(new PKCS8EncodedKeySpec(unseal(row.getKid(), sealed)));
+            PublicKey publicKey = factory.generatePublic(
+                    new X509EncodedKeySpec(Decoders.BASE64.decode(row.getPublicKey())));
+            Instant retiresAt = row.getRetiresAt() != null ? row.getRetiresAt() : Instant.MAX;
+            return new SigningKey(row.getKid(), privateKey, publicKey, publicKey, alg, row.getCreatedAt(), retiresAt);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            log.warn("Skipping JWT signing key {}: {}", row.getKid(), e.toString());
+            return null;
+        }
+    }
+
+    // the kid is bound in as associated data, a sealed key can't be passed off under another row's kid
+    private byte[] seal(String kid, byte[] plain) {
+        try {
+            byte[] iv = new byte[GCM_IV_LENGTH];
+            RANDOM.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, sealingKey, new GCMParameterSpec(128, iv));
+            cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+            byte[] sealed = cipher.doFinal(plain);
+            byte[] out = Arrays.copyOf(iv, GCM_IV_LENGTH + sealed.length);
+            System.arraycopy(sealed, 0, out, GCM_IV_LENGTH, sealed.length);
+            return out;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private byte[] unseal(String kid, byte[] sealed) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, sealingKey, new GCMParameterSpec(128, sealed, 0, GCM_IV_LENGTH));
+        cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+        return cipher.doFinal(sealed, GCM_IV_LENGTH, sealed.length - GCM_IV_LENGTH);
+    }
+
+    private static SecureDigestAlgorithm<Key, Key> algOf(String algorithm) {
+        return switch (algorithm.toUpperCase()) {
+            case "RS256" -> alg(Jwts.SIG.RS256);
+            case "ES256" -> alg(Jwts.SIG.ES256);
+            case "EDDSA" -> alg(Jwts.SIG.EdDSA);
+            default -> throw new IllegalArgumentException("Unsupported JWT algorithm: " + algorithm);
+        };
+    }
+
+    private static String keyFamily(String algorithm) {
+        return switch (algorithm.toUpperCase()) {
+            case "RS256" -> "RSA";
+            case "ES256" -> "EC";
+            default -> "Ed25519";
+        };
+    }
+
+    private static byte[] sha256(byte[]... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (byte[] part : parts) {
+                digest.update(part);
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SecureDigestAlgorithm<Key, Key> alg(SecureDigestAlgorithm<?, ?> alg) {
+        return (SecureDigestAlgorithm<Key, Key>) alg;
+    }
+
+    private static String fingerprint(byte[] bytes) {
+        return Encoders.BASE64URL.encode(Arrays.copyOf(sha256(bytes), 12));
+    }
+}
@@ -1,25 +1,28 @@
 package in.nikhilsaini.authify.security;
 
+import in.nikhilsaini.authify.dto.UserCredentials;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
 import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 
-import java.security.Key;
+import java.time.Instant;
 import java.util.Date;
-import java.util.function.Function;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Service
+@RequiredArgsConstructor
 public class JwtUtil {
 
-    @Value("${auth.jwt.secret}")
-    private String secret;
+    private static final String STATE_CLAIM = "st";
+
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final JwtKeyRing keyRing;
 
     @Value("${auth.jwt.accessTokenExpiration}")
     private Long accessTokenExpiration;
@@ -27,58 +30,89 @@ public class JwtUtil {
     @Value("${auth.jwt.refreshTokenExpiration}")
     private Long refreshTokenExpiration;
 
-    // Generate AccessToken
-    public String generateToken(String email, String role) {
-        return buildToken(email, role, accessTokenExpiration);
+    // built once, immutable and thread-safe; the key ring picks the verification key by "kid"
+    private JwtParser parser;
+
+    @PostConstruct
+    void init() {
+        parser = Jwts.parser()
+                .keyLocator(keyRing)
+                .build();
+    }
 
+    // Generate AccessToken
+    // carries role and account state so the filter can authenticate without a DB lookup
+    public String generateToken(UserCredentials user) {
+        return buildToken(user.email(), user.role().name(), AccountState.of(user), newTokenId(),
+                System.currentTimeMillis() + accessTokenExpiration);
     }
 
     // generate RefreshToken
-    public String generateRefreshToken(String email) {
-        return buildToken(email, null, refreshTokenExpiration);
+    // tokenId (jti) is registered with the refresh token store, which allows one use per token
+    public String generateRefreshToken(UserCredentials user, String tokenId, Instant expiresAt) {
+        return buildToken(user.email(), null, AccountState.of(user), tokenId, expiresAt.toEpochMilli());
+    }
+
+    public Instant refreshTokenExpiry() {
+        return Instant.now().plusMillis(refreshTokenExpiration);
     }
 
-    private String buildToken(String email, String role, Long expirationMs) {
+    private String buildToken(String email, String role, AccountState state, String tokenId, long expiresAtMs) {
+        long now = System.currentTimeMillis();
+        JwtKeyRing.SigningKey key = keyRing.activeKey();
         return Jwts.builder()
-                .setSubject(email)
+                .header().keyId(key.kid()).and()
+                .id(tokenId)
+                .subject(email)
                 .claim("role", role)
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + expirationMs))
-                .signWith(getSignInKey(), SignatureAlgorithm.HS256)
+                .claim(STATE_CLAIM, state.encode())
+                .issuedAt(new Date(now))
+                .expiration(new Date(expiresAtMs))
+                .signWith(key.signingKey(), key.algorithm())
                 .compact();
     }
 
-    @PostConstruct
-    private Key getSignInKey(){
-        byte[] keyBytes = Decoders.BASE64.decode(secret);
-        return Keys.hmacShaKeyFor(keyBytes);
+    // jti for access tokens, lets a single token be revoked; uniqueness is all it needs, not secrecy
+    private static String newTokenId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong());
     }
 
-    public String extractEmail(String token){
-        return extractClaim(token , Claims::getSubject);
-    }
-    public boolean isTokenValid(String token , String userEmail){
-        final String email = extractEmail(token);
-        return (email.equals(userEmail) && !isTokenExpired(token));
+    // Parses the token once, checking signature and expiry.
+    // Throws JwtException (ExpiredJwtException, SignatureException, ...) if the token can't be trusted.
+    public VerifiedToken verify(String token) {
+        if (verifiedTokenCache.isEnabled()) {
+            return verifiedTokenCache.getOrVerify(token, this::parse);
+        }
+        return parse(token);
     }
-    public boolean isTokenExpired(String token){
-        return extractExpiration(token).before(new Date());
-    }
-    private Date extractExpiration(String token){
-        return extractClaim(token , Claims::getExpiration);
 
+    private VerifiedToken parse(String token) {
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        if (claims.getSubject() == null || claims.getExpiration() == null) {
+            throw new JwtException("Token is missing subject or expiration");
+        }
+        Long state = claims.get(STATE_CLAIM, Long.class);
+        return new VerifiedToken(
+                claims.getSubject(),
+                claims.get("role", String.class),
+                state != null ? AccountState.decode(state) : null,
+                claims.getId(),
+                claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null,
+                claims.getExpiration().toInstant()
+        );
     }
 
-    public <T> T extractClaim(String token , Function<Claims , T> resolver){
-        final Claims claims  = extractAllClaims(token);
-        return resolver.apply(claims);
+    public String extractEmail(String token){
+        return verify(token).subject();
     }
-    public Claims extractAllClaims(String token ){
-        return Jwts.parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+
+    public boolean isTokenValid(String token , String userEmail){
+        try {
+            return verify(token).subject().equals(userEmail);
+        } catch (JwtException | IllegalArgumentException e) {
+            return false;
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,129 @@
+package in.nikhilsaini.authify.security;
+
+import in.nikhilsaini.authify.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs password hashing on a small, CPU-sized pool instead of on Tomcat threads.
+// At most auth.hashing.threads hashes run at once, so a login storm can't take every core and starve cheap
+// endpoints. Work beyond that waits in a bounded queue; when the queue is full, or a task has waited longer
+// than auth.hashing.maxWait, the request fails fast with ServiceOverloadedException (503) instead of piling up.
+@Component
+@RequiredArgsConstructor
+public class PasswordHasher {
+
+    private final PasswordEncoder passwordEncoder;
+    private final MeterRegistry meterRegistry;
+
+    // 0 = one thread per available processor
+    @Value("${auth.hashing.threads:0}")
+    private int threads;
+
+    @Value("${auth.hashing.queueCapacity:64}")
+    private int queueCapacity;
+
+    @Value("${auth.hashing.maxWait:2s}")
+    private Duration maxWait;
+
+    private ThreadPoolExecutor executor;
+    private Timer queueWait;
+    private Timer encodeTime;
+    private Timer matchesTime;
+    private Counter rejectedQueueFull;
+    private Counter rejectedWaitTimeout;
+
+    @PostConstruct
+    void init() {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        queueWait = Timer.builder("auth.hashing.queue.wait").register(meterRegistry);
+        encodeTime = Timer.builder("auth.hashing.time").tag("operation", "encode").register(meterRegistry);
+        matchesTime = Timer.builder("auth.hashing.time").tag("operation", "matches").register(meterRegistry);
+        rejectedQueueFull = Counter.builder("auth.hashing.rejected").tag("reason", "queue_full").register(meterRegistry);
+        rejectedWaitTimeout = Counter.builder("auth.hashing.rejected").tag("reason", "wait_timeout").register(meterRegistry);
+        Gauge.builder("auth.hashing.queue.size", executor, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("auth.hashing.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    public String encode(CharSequence rawPassword) {
+        return submit(() -> encodeTime.record(() -> passwordEncoder.encode(rawPassword)));
+    }
+
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(() -> matchesTime.record(() -> passwordEncoder.matches(rawPassword, encodedPassword)));
+    }
+
+    // true when the hash was made with another algorithm or a lower cost than new hashes get; no hashing involved
+    public boolean needsUpgrade(String encodedPassword) {
+        return encodedPassword != null && passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T submit(Callable<T> hash) {
+        long queuedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long waited = System.nanoTime() - queuedAt;
+                queueWait.record(waited, TimeUnit.NANOSECONDS);
+                // the caller has likely given up or is about to; don't spend a core on it
+                if (waited > maxWait.toNanos()) {
+                    rejectedWaitTimeout.increment();
+                    throw overloaded();
+                }
+                return hash.call();
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedQueueFull.increment();
+            throw overloaded();
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw overloaded();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private ServiceOverloadedException overloaded() {
+        return new ServiceOverloadedException("Too many sign-in requests, please retry shortly", 1);
+    }
+}
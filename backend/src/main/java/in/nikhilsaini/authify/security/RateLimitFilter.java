@@ -0,0 +1,258 @@
+package in.nikhilsaini.authify.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import in.nikhilsaini.authify.dto.ApiError;
+import in.nikhilsaini.authify.util.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Token-bucket throttling for the public endpoints that cost a password hash or send an email.
+// A limited request takes a token from the bucket of its client IP and, if the JSON body or query names one,
+// from the bucket of the target email. An empty bucket is answered with 429 + Retry-After here, before
+// JwtAuthenticationFilter, the controller or AuthServiceImpl do any work.
+// Buckets are one AtomicLong each (see TokenBucket), held in a Caffeine cache per endpoint and key type that is
+// bounded by auth.ratelimit.maxKeys and drops a bucket once it has been idle long enough to be full again.
+// The client IP is request.getRemoteAddr(); behind a proxy set server.forward-headers-strategy so that it is
+// the real client and not the proxy.
+@Component
+@RequiredArgsConstructor
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    // bodies of the limited endpoints are a few fields; only this much is buffered to find the email
+    private static final int MAX_BUFFERED_BODY = 8192;
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${auth.ratelimit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${auth.ratelimit.maxKeys:100000}")
+    private long maxKeys;
+
+    // <capacity>/<period>: up to capacity requests at once, refilled evenly over the period
+    @Value("${auth.ratelimit.login.perIp:30/1m}")
+    private String loginPerIp;
+
+    @Value("${auth.ratelimit.login.perEmail:10/5m}")
+    private String loginPerEmail;
+
+    @Value("${auth.ratelimit.register.perIp:10/1m}")
+    private String registerPerIp;
+
+    @Value("${auth.ratelimit.register.perEmail:3/10m}")
+    private String registerPerEmail;
+
+    @Value("${auth.ratelimit.resendOtp.perIp:10/1m}")
+    private String resendOtpPerIp;
+
+    @Value("${auth.ratelimit.resendOtp.perEmail:3/10m}")
+    private String resendOtpPerEmail;
+
+    @Value("${auth.ratelimit.forgotPassword.perIp:10/1m}")
+    private String forgotPasswordPerIp;
+
+    @Value("${auth.ratelimit.forgotPassword.perEmail:3/10m}")
+    private String forgotPasswordPerEmail;
+
+    private record Limit(TokenBucket bucket, Cache<String, AtomicLong> states, Counter rejected) {
+    }
+
+    private record EndpointLimits(Limit perIp, Limit perEmail) {
+    }
+
+    private final Map<String, EndpointLimits> limitsByPath = new HashMap<>();
+
+    @PostConstruct
+    void init() {
+        register("/auth/login", "login", loginPerIp, loginPerEmail);
+        register("/auth/register", "register", registerPerIp, registerPerEmail);
+        register("/auth/resend-otp", "resend-otp", resendOtpPerIp, resendOtpPerEmail);
+        register("/auth/forgot-password", "forgot-password", forgotPasswordPerIp, forgotPasswordPerEmail);
+    }
+
+    private void register(String path, String endpoint, String perIp, String perEmail) {
+        limitsByPath.put(path, new EndpointLimits(limit(endpoint, "ip", perIp), limit(endpoint, "email", perEmail)));
+    }
+
+    private Limit limit(String endpoint, String keyType, String spec) {
+        TokenBucket bucket = TokenBucket.parse(spec);
+        Cache<String, AtomicLong> states = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(bucket.period())
+                .build();
+        Gauge.builder("auth.ratelimit.keys", states, Cache::estimatedSize)
+                .tags("endpoint", endpoint, "key", keyType).register(meterRegistry);
+        Counter rejected = Counter.builder("auth.ratelimit.rejected")
+                .tags("endpoint", endpoint, "key", keyType).register(meterRegistry);
+        return new Limit(bucket, states, rejected);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !"POST".equals(request.getMethod()) || !limitsByPath.containsKey(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain
+    ) throws ServletException, IOException {
+        EndpointLimits limits = limitsByPath.get(request.getServletPath());
+        long now = System.nanoTime();
+
+        long wait = tryConsume(limits.perIp(), request.getRemoteAddr(), now);
+        if (wait > 0) {
+            reject(request, response, wait);
+            return;
+        }
+
+        BufferedBodyRequest buffered = new BufferedBodyRequest(request);
+        String email = email(buffered);
+        if (email != null) {
+            wait = tryConsume(limits.perEmail(), email, now);
+            if (wait > 0) {
+                reject(request, response, wait);
+                return;
+            }
+        }
+        filterChain.doFilter(buffered, response);
+    }
+
+    private static long tryConsume(Limit limit, String key, long now) {
+        long wait = limit.bucket().tryConsume(limit.states().get(key, k -> TokenBucket.newState()), now);
+        if (wait > 0) {
+            limit.rejected().increment();
+        }
+        return wait;
+    }
+
+    // resend-otp takes it as a query parameter, the others in the JSON body
+    private String email(BufferedBodyRequest request) {
+        String email = request.getQueryString() != null ? request.getParameter("email") : null;
+        if (email == null && request.head().length > 0) {
+            try {
+                JsonNode field = objectMapper.readTree(request.head()).get("email");
+                email = field != null && field.isTextual() ? field.asText() : null;
+            } catch (IOException e) {
+                return null;   // malformed or longer than the buffer, the controller will reject it
+            }
+        }
+        return email == null || email.isBlank() ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), ApiError.builder()
+                .success(false)
+                .message("Too many requests, please try again later")
+                .errorCode("RATE_LIMITED")
+                .timestamp(LocalDateTime.now())
+                .path(request.getRequestURI())
+                .build());
+    }
+
+    // Reads the first MAX_BUFFERED_BODY bytes of the body so the email can be looked at, then hands the
+    // controller those bytes followed by whatever is left of the original stream.
+    private static final class BufferedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] head;
+        private ServletInputStream replay;
+
+        BufferedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            boolean json = request.getContentType() != null
+                    && request.getContentType().toLowerCase(Locale.ROOT).startsWith(MediaType.APPLICATION_JSON_VALUE);
+            head = json ? request.getInputStream().readNBytes(MAX_BUFFERED_BODY) : new byte[0];
+        }
+
+        byte[] head() {
+            return head;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (head.length == 0) {
+                return super.getInputStream();
+            }
+            if (replay == null) {
+                InputStream rest = super.getInputStream();
+                InputStream combined = new SequenceInputStream(new ByteArrayInputStream(head), rest);
+                replay = new ServletInputStream() {
+                    private boolean finished;
+
+                    @Override
+                    public int read() throws IOException {
+                        int b = combined.read();
+                        finished = b < 0;
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] buffer, int offset, int length) throws IOException {
+                        int n = combined.read(buffer, offset, length);
+                        finished = n < 0;
+                        return n;
+                    }
+
+                    @Override
+                    public boolean isFinished() {
+                        return finished;
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return true;
+                    }
+
+                    @Override
+                    public void setReadListener(ReadListener listener) {
+                        // always ready: the listener reads everything in onDataAvailable, blocking on the rest
+                        try {
+                            listener.onDataAvailable();
+                            listener.onAllDataRead();
+                        } catch (IOException e) {
+                            listener.onError(e);
+                        }
+                    }
+                };
+            }
+            return replay;
+        }
+    }
+}
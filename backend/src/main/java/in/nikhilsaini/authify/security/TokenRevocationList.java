@@ -0,0 +1,191 @@
+package in.nikhilsaini.authify.security;
+
+import in.nikhilsaini.authify.datasource.ReplicaRouting;
+import in.nikhilsaini.authify.entity.TokenRevocation;
+import in.nikhilsaini.authify.enums.RevocationType;
+import in.nikhilsaini.authify.repository.TokenRevocationRepository;
+import in.nikhilsaini.authify.util.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// In-memory denylist of revoked tokens, checked by the filter without touching the DB.
+// Revoked jtis are sharded by the token's expiry into buckets of auth.revocation.bucketWidth. Each bucket
+// has a Bloom filter in front of an exact set, so the common "not revoked" answer is a handful of bit reads.
+// Once a bucket's tokens have all expired the whole bucket is dropped instead of scanning entries.
+// Every revocation is appended to tbl_token_revocations; startup replays it and nodes tail it for entries
+// written elsewhere. The tail goes by the DB-assigned createdAt, not the id: AUTO_INCREMENT ids are handed out
+// at insert but become visible at commit, so a lower id can appear after higher ones have been read.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TokenRevocationList {
+
+    private static final int PAGE_SIZE = 1000;
+    // rows become visible at commit, after createdAt; a tail re-reads this far back from the newest createdAt seen
+    private static final Duration TAIL_LOOK_BACK = Duration.ofMinutes(1);
+
+    private final TokenRevocationRepository revocationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ReplicaRouting replicaRouting;
+
+    @Value("${auth.revocation.bucketWidth:1h}")
+    private Duration bucketWidth;
+
+    @Value("${auth.revocation.expectedPerBucket:10000}")
+    private long expectedPerBucket;
+
+    @Value("${auth.jwt.refreshTokenExpiration}")
+    private Long refreshTokenExpiration;
+
+    private static final class Bucket {
+        final BloomFilter bloom;
+        final Set<String> tokenIds = ConcurrentHashMap.newKeySet();
+
+        Bucket(long expectedInsertions) {
+            bloom = new BloomFilter(expectedInsertions, 0.01);
+        }
+
+        void add(String tokenId) {
+            tokenIds.add(tokenId);
+            bloom.put(tokenId);
+        }
+
+        boolean contains(String tokenId) {
+            return bloom.mightContain(tokenId) && tokenIds.contains(tokenId);
+        }
+    }
+
+    // bucket number (expiry / bucketWidth) -> bucket
+    private final ConcurrentHashMap<Long, Bucket> buckets = new ConcurrentHashMap<>();
+
+    // lower-cased email -> epoch second; tokens issued before it are revoked
+    private final ConcurrentHashMap<String, Long> subjectCutoffs = new ConcurrentHashMap<>();
+
+    // newest log createdAt applied on this node
+    private volatile Instant lastSeenCreatedAt = Instant.EPOCH;
+
+    @PostConstruct
+    void rebuild() {
+        long started = System.nanoTime();
+        int applied = tailLog(Instant.EPOCH);
+        log.info("Rebuilt token revocation list from {} log entries in {} ms", applied,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    public boolean isRevoked(VerifiedToken token) {
+        if (!subjectCutoffs.isEmpty()) {
+            Long cutoff = subjectCutoffs.get(key(token.subject()));
+            if (cutoff != null && token.issuedAt() != null && token.issuedAt().getEpochSecond() <= cutoff) {
+                return true;
+            }
+        }
+        if (token.id() == null || buckets.isEmpty()) {
+            return false;
+        }
+        Bucket bucket = buckets.get(bucketOf(token.expiresAt()));
+        return bucket != null && bucket.contains(token.id());
+    }
+
+    public void revoke(String tokenId, Instant expiresAt) {
+        append(TokenRevocation.builder()
+                .type(RevocationType.TOKEN)
+                .value(tokenId)
+                .expiresAt(expiresAt)
+                .build());
+    }
+
+    // every token of the user issued up to now, e.g. after a password reset or a lock
+    public void revokeAllBefore(String email, Instant notBefore) {
+        append(TokenRevocation.builder()
+                .type(RevocationType.SUBJECT)
+                .value(email)
+                .notBefore(notBefore)
+                .expiresAt(notBefore.plusMillis(refreshTokenExpiration))
+                .build());
+    }
+
+    private void append(TokenRevocation entry) {
+        apply(entry);   // effective on this node right away, even if the write below fails
+        revocationRepository.save(entry);
+    }
+
+    private void apply(TokenRevocation entry) {
+        if (entry.getType() == RevocationType.SUBJECT) {
+            // iat has second precision, so a token issued in the same second as the cutoff is refused too: one
+            // issued just before it must not survive (a refresh token would keep rotating), one issued just after
+            // only costs its client another login
+            long cutoff = entry.getNotBefore().truncatedTo(ChronoUnit.SECONDS).getEpochSecond();
+            subjectCutoffs.merge(key(entry.getValue()), cutoff, Math::max);
+        } else {
+            buckets.computeIfAbsent(bucketOf(entry.getExpiresAt()), b -> new Bucket(expectedPerBucket))
+                    .add(entry.getValue());
+        }
+    }
+
+    private long bucketOf(Instant expiresAt) {
+        return expiresAt.toEpochMilli() / bucketWidth.toMillis();
+    }
+
+    // MySQL compares emails case-insensitively, a revocation for "Bob@x.io" covers tokens issued to "bob@x.io"
+    private static String key(String email) {
+        return email == null ? null : email.toLowerCase(Locale.ROOT);
+    }
+
+    @Scheduled(fixedDelayString = "${auth.revocation.pollInterval:5s}")
+    void pollLog() {
+        tailLog(lastSeenCreatedAt.minus(TAIL_LOOK_BACK));
+    }
+
+    // pulls unexpired entries created at or after `since` (by any node) in (createdAt, id) order; entries seen
+    // before are applied again, which changes nothing
+    private int tailLog(Instant since) {
+        int applied = 0;
+        Instant afterCreatedAt = since;
+        long afterId = 0;
+        Instant newest = lastSeenCreatedAt;
+        List<TokenRevocation> page;
+        do {
+            Instant createdAfter = afterCreatedAt;
+            long idAfter = afterId;
+            // a replica could be further behind than the look-back
+            page = replicaRouting.onPrimary(() -> revocationRepository.findCreatedAfter(
+                    createdAfter, idAfter, Instant.now(), PageRequest.of(0, PAGE_SIZE)));
+            for (TokenRevocation entry : page) {
+                apply(entry);
+                afterCreatedAt = entry.getCreatedAt();
+                afterId = entry.getId();
+                if (entry.getCreatedAt().isAfter(newest)) {
+                    newest = entry.getCreatedAt();
+                }
+            }
+            applied += page.size();
+        } while (page.size() == PAGE_SIZE);
+        lastSeenCreatedAt = newest;
+        return applied;
+    }
+
+    @Scheduled(fixedDelayString = "${auth.revocation.cleanupInterval:10m}")
+    void dropExpired() {
+        long now = System.currentTimeMillis();
+        long currentBucket = now / bucketWidth.toMillis();
+        // a bucket older than the current one only holds tokens that have already expired
+        buckets.keySet().removeIf(bucket -> bucket < currentBucket);
+        long maxTokenAgeSeconds = refreshTokenExpiration / 1000;
+        subjectCutoffs.values().removeIf(cutoff -> cutoff + maxTokenAgeSeconds < now / 1000);
+        transactionTemplate.executeWithoutResult(tx -> revocationRepository.deleteExpired(Instant.now()));
+    }
+}
@@ -0,0 +1,18 @@
+package in.nikhilsaini.authify.security;
+
+import java.time.Instant;
+
+// Claims of a token whose signature and expiry have already been checked by JwtUtil.verify
+public record VerifiedToken(
+        String subject,
+        String role,
+        AccountState accountState,  // null for tokens issued before the "st" claim existed
+        String id,                  // jti, null for tokens issued before it was added
+        Instant issuedAt,
+        Instant expiresAt
+) {
+
+    public boolean isAccessToken() {
+        return role != null;
+    }
+}
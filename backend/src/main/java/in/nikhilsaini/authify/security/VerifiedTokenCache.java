@@ -0,0 +1,97 @@
+package in.nikhilsaini.authify.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Maps a SHA-256 digest of a bearer token to its verified claims, so a token reused for its whole lifetime
+// is only parsed and signature-checked once. Raw tokens are never kept in memory.
+// Each entry expires at the token's own exp. Caffeine records reads in striped, lock-free buffers and
+// applies eviction in batches, so Tomcat threads don't contend on a single lock.
+@Component
+@RequiredArgsConstructor
+public class VerifiedTokenCache {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${auth.jwt.cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${auth.jwt.cache.maximumSize:100000}")
+    private long maximumSize;
+
+    private Cache<TokenDigest, VerifiedToken> cache;
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    // 32-byte digest as four longs: cheap hashCode/equals and no byte[] per entry
+    private record TokenDigest(long a, long b, long c, long d) {
+
+        static TokenDigest of(String token) {
+            MessageDigest sha = SHA_256.get();
+            ByteBuffer hash = ByteBuffer.wrap(sha.digest(token.getBytes(StandardCharsets.UTF_8)));
+            return new TokenDigest(hash.getLong(), hash.getLong(), hash.getLong(), hash.getLong());
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<TokenDigest, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(TokenDigest key, VerifiedToken value, long currentTime) {
+                        long millisLeft = value.expiresAt().toEpochMilli() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(millisLeft, 0));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(TokenDigest key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(TokenDigest key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "verifiedTokens");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Returns the cached claims, or runs the verifier and caches its result. Verifier exceptions are not cached.
+    public VerifiedToken getOrVerify(String token, Function<String, VerifiedToken> verifier) {
+        TokenDigest key = TokenDigest.of(token);
+        VerifiedToken cached = cache.getIfPresent(key);
+        if (cached != null && cached.expiresAt().toEpochMilli() > System.currentTimeMillis()) {
+            return cached;
+        }
+        VerifiedToken verified = verifier.apply(token);
+        cache.put(key, verified);
+        return verified;
+    }
+}
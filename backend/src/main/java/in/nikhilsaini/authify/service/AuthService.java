@@ -10,4 +10,7 @@ public interface AuthService {
    AuthResponse forgotPassword(ForgotPasswordRequest request);
    AuthResponse resetPassword(ResetPasswordRequest request);
    AuthResponse refreshToken(String refreshToken);
+   AuthResponse updateAccountLock(String email, boolean locked);
+   AuthResponse logout(String accessToken, String refreshToken);
+   AuthResponse revokeAllTokens(String email);
 }
@@ -1,9 +1,10 @@
 package in.nikhilsaini.authify.service;
 
-import in.nikhilsaini.authify.entity.User;
-import in.nikhilsaini.authify.repository.UserRepository;
+import in.nikhilsaini.authify.cache.UserCache;
+import in.nikhilsaini.authify.dto.UserCredentials;
+import in.nikhilsaini.authify.security.AuthenticatedUser;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -12,22 +13,21 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class CustomUserDetailsService implements UserDetailsService {
 
-    private final UserRepository userRepository;
+    private final UserCache userCache;
 
     @Override
-    public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+    public AuthenticatedUser loadUserByUsername(String email) throws UsernameNotFoundException {
 
-        User user = userRepository.findByEmail(email)
+        UserCredentials user = userCache.findByEmail(email)
                 .orElseThrow(() ->
                         new UsernameNotFoundException("User not found with email: " + email));
 
-        return org.springframework.security.core.userdetails.User
-                .builder()
-                .username(user.getEmail())
-                .password(user.getPassword())
-                .roles(user.getRole().name())     // USER or ADMIN
-                .disabled(!user.isEmailVerified()) // disables login until email verified
-                .accountLocked(!user.isAccountNonLocked())
-                .build();
+        return new AuthenticatedUser(
+                user.email(),
+                user.password() != null ? user.password() : "",  // OAuth users have no password
+                user.emailVerified(),      // disables login until email verified
+                user.accountNonLocked(),
+                user.tokenVersion(),
+                AuthorityUtils.createAuthorityList("ROLE_" + user.role().name()));   // USER or ADMIN
     }
 }
@@ -0,0 +1,14 @@
+package in.nikhilsaini.authify.service;
+
+import in.nikhilsaini.authify.dto.UserCredentials;
+import in.nikhilsaini.authify.security.VerifiedToken;
+
+public interface RefreshTokenService {
+
+    // starts a new token family (login, OTP verification, OAuth)
+    String issue(UserCredentials user);
+
+    // one-time use: returns the next token of the family, or null if the presented one is unknown,
+    // revoked or already used. Reuse revokes the whole family.
+    String rotate(VerifiedToken presented, UserCredentials user);
+}
@@ -1,22 +1,40 @@
 package in.nikhilsaini.authify.service.impl;
 
+import in.nikhilsaini.authify.cache.KnownEmails;
+import in.nikhilsaini.authify.cache.UserCache;
+import in.nikhilsaini.authify.datasource.ReplicaRouting;
 import in.nikhilsaini.authify.dto.*;
 import in.nikhilsaini.authify.entity.TempUser;
 import in.nikhilsaini.authify.entity.User;
 import in.nikhilsaini.authify.enums.AuthProvider;
+import in.nikhilsaini.authify.enums.OtpPurpose;
 import in.nikhilsaini.authify.enums.Role;
+import in.nikhilsaini.authify.exception.ServiceOverloadedException;
+import in.nikhilsaini.authify.otp.OtpStore;
 import in.nikhilsaini.authify.repository.TempUserRepository;
 import in.nikhilsaini.authify.repository.UserRepository;
+import in.nikhilsaini.authify.security.AccountState;
+import in.nikhilsaini.authify.security.AccountStateRegistry;
 import in.nikhilsaini.authify.security.JwtUtil;
+import in.nikhilsaini.authify.security.PasswordHasher;
+import in.nikhilsaini.authify.security.TokenRevocationList;
+import in.nikhilsaini.authify.security.VerifiedToken;
 import in.nikhilsaini.authify.service.AuthService;
 import in.nikhilsaini.authify.service.EmailService;
+import in.nikhilsaini.authify.service.RefreshTokenService;
+import in.nikhilsaini.authify.shard.UserShard;
+import in.nikhilsaini.authify.shard.UserShards;
+import io.jsonwebtoken.JwtException;
 import lombok.Builder;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.util.Random;
 
 
 @Service
@@ -26,16 +44,44 @@ public class AuthServiceImpl implements AuthService {
 
     private final UserRepository userRepository;
     private final TempUserRepository tempUserRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
     private final JwtUtil jwtUtil;
     private final EmailService emailService;
+    private final AccountStateRegistry accountStateRegistry;
+    private final UserCache userCache;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenRevocationList tokenRevocationList;
+    private final TransactionTemplate transactionTemplate;
+    private final OtpStore otpStore;
+    private final KnownEmails knownEmails;
+    private final ReplicaRouting replicaRouting;
+    private final UserShards userShards;
+
+    // how long an unverified registration is kept, OTPs can be re-sent within it
+    private LocalDateTime registrationExpiry(){
+        return LocalDateTime.now().plusHours(24);
+    }
 
-    private String generateOtp(){
-        return String.valueOf(100000 + new Random().nextInt(900000));
+    private AuthResponse otpFailure(OtpStore.Result result){
+        String message = switch (result) {
+            case INVALID -> "Invalid OTP!";
+            case TOO_MANY_ATTEMPTS -> "Too many attempts! Please request a new OTP.";
+            default -> "OTP Expired!";
+        };
+        return AuthResponse.builder().success(false).message(message).build();
     }
 
-    private LocalDateTime otpExpiry(){
-        return LocalDateTime.now().plusMinutes(10);
+    private static void afterCommit(Runnable action){
+        if(!TransactionSynchronizationManager.isSynchronizationActive()){
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 
     private UserDto mapToUserDto(User user){
@@ -43,12 +89,19 @@ public class AuthServiceImpl implements AuthService {
                 .id(user.getId()).name(user.getName()).email(user.getEmail()).role(user.getRole().name()).build();
     }
 
+    private UserDto mapToUserDto(UserCredentials user){
+        return UserDto.builder()
+                .id(user.id()).name(user.name()).email(user.email()).role(user.role().name()).build();
+    }
+
 
     // REGISTER
 
     @Override
     public AuthResponse register(RegisterRequest request) {
-        if(userRepository.existsByEmail(request.getEmail())){
+        // not short-circuited by KnownEmails: a user created on another node may not be in this node's filter yet,
+        // and a registration for their email would only fail at verifyOtp, on the unique key
+        if(replicaRouting.readFor(request.getEmail(), () -> userRepository.existsByEmail(request.getEmail()))){
             return AuthResponse.builder()
                     .success(false)
                     .message("User with this email address already exists!")
@@ -56,15 +109,11 @@ public class AuthServiceImpl implements AuthService {
         }
 
         TempUser temp = tempUserRepository.findById(request.getEmail()).orElse(null);
-        String otp = generateOtp();
-
-        if(temp!=null){
-            temp.setOtp(otp);
-            temp.setOtpGeneratedAt(LocalDateTime.now());
-            temp.setOtpExpiry(otpExpiry());
 
-            tempUserRepository.save(temp);
-            emailService.sendVerificationOtp(temp.getEmail(),otp);
+        if(temp!=null && temp.getOtpExpiry().isAfter(LocalDateTime.now())){
+            // only the outbox row is written, the registration itself is unchanged
+            transactionTemplate.executeWithoutResult(tx ->
+                emailService.sendVerificationOtp(temp.getEmail(), otpStore.issue(OtpPurpose.VERIFY_EMAIL, temp.getEmail())));
             return AuthResponse.builder()
                     .success(true)
                     .message("OTP sent again! Please verify your email.")
@@ -74,15 +123,15 @@ public class AuthServiceImpl implements AuthService {
         TempUser tempUser = TempUser.builder()
                 .name(request.getName())
                 .email(request.getEmail())
-                .password(passwordEncoder.encode(request.getPassword()))
-                .otp(otp)
-                .otpGeneratedAt(LocalDateTime.now())
-                .otpExpiry(otpExpiry())
+                .password(passwordHasher.encode(request.getPassword()))
+                .otpExpiry(registrationExpiry())
                 .build();
 
-        tempUserRepository.save(tempUser);
-
-        emailService.sendVerificationOtp(tempUser.getEmail(), otp);
+        // hashed above, outside the transaction, so BCrypt doesn't hold a DB connection
+        transactionTemplate.executeWithoutResult(tx -> {
+            tempUserRepository.save(tempUser);
+            emailService.sendVerificationOtp(tempUser.getEmail(), otpStore.issue(OtpPurpose.VERIFY_EMAIL, tempUser.getEmail()));
+        });
 
         return AuthResponse.builder().success(true).message("User Registered ! Please Verify your email.")
                 .build();
@@ -94,14 +143,20 @@ public class AuthServiceImpl implements AuthService {
 
 
     @Override
+    @Transactional
     public AuthResponse verifyOtp(OtpRequest request) {
+        // checked before any DB read, wrong guesses never reach the DB
+        OtpStore.Result result = otpStore.verify(OtpPurpose.VERIFY_EMAIL, request.getEmail(), request.getOtp());
+        if(result == OtpStore.Result.NOT_FOUND && !tempUserRepository.existsById(request.getEmail())){
+            return AuthResponse.builder().success(false).message("user not found").build();
+        }
+        if(result != OtpStore.Result.VALID){
+            return otpFailure(result);
+        }
         TempUser temp = tempUserRepository.findById(request.getEmail()).orElse(null);
         if(temp == null){
             return AuthResponse.builder().success(false).message("user not found").build();
         }
-        if(!temp.getOtp().equals(request.getOtp())){
-            return AuthResponse.builder().success(false).message("Invalid OTP!").build();
-        }
         if(temp.getOtpExpiry().isBefore(LocalDateTime.now())){
             return AuthResponse.builder().success(false).message("OTP Expired!").build();
         }
@@ -117,16 +172,30 @@ public class AuthServiceImpl implements AuthService {
                                                                 .accountNonLocked(true)
 
                                                                         .build();
-        userRepository.save(user);
+        // both rows live on the shard of this email; its transaction commits them together (without sharding
+        // that is the transaction this method already runs in)
+        UserShard shard = userShards.forEmail(temp.getEmail());
+        shard.transactionTemplate().executeWithoutResult(tx -> {
+            shard.users().save(user);
+            shard.tempUsers().delete(temp);
+        });
+        // after commit, like the other write paths. Nothing is cached for a new email (unknown emails load as null,
+        // which UserCache doesn't keep); invalidate() is for its sticky window, reads of this user stay on the
+        // primary for a while, and that has to start at the commit to cover the replicas catching up. A rolled
+        // back insert also shouldn't leave its email in the filter
+        String email = user.getEmail();
+        afterCommit(() -> {
+            userCache.invalidate(email);
+            knownEmails.add(email);
+        });
 
-        //delete temp user
-        tempUserRepository.delete(temp);
         // SEND WELCOME EMAIL
         emailService.sendWelcomeEmail(user.getEmail(),user.getName());
 
         //Generate Tokens
-        String access = jwtUtil.generateToken(user.getEmail(), user.getRole().name());
-        String refresh = jwtUtil.generateRefreshToken(user.getEmail());
+        UserCredentials credentials = UserCredentials.of(user);
+        String access = jwtUtil.generateToken(credentials);
+        String refresh = refreshTokenService.issue(credentials);
         return AuthResponse.builder()
                 .success(true)
                 .message("Email Verified Successfully")
@@ -142,16 +211,14 @@ public class AuthServiceImpl implements AuthService {
     // -------------------------------------
 
     @Override
+    @Transactional
     public AuthResponse resendOtp(String email) {
-       User user = userRepository.findByEmail(email).orElse(null);
-       if(user == null) return AuthResponse.builder().success(false).message("user not found").build();
+       // codes are only ever verified against a pending registration
+       TempUser temp = tempUserRepository.findById(email).orElse(null);
+       if(temp == null || temp.getOtpExpiry().isBefore(LocalDateTime.now()))
+           return AuthResponse.builder().success(false).message("user not found").build();
 
-       String newOtp = generateOtp();
-       user.setOtp(newOtp);
-       user.setOtpExpiry(otpExpiry());
-       userRepository.save(user);
-
-       emailService.sendVerificationOtp(email, newOtp);
+       emailService.sendVerificationOtp(email, otpStore.issue(OtpPurpose.VERIFY_EMAIL, email));
        return AuthResponse.builder()
                .success(true)
                .message("OTP RESENT SUCCESSFULLY")
@@ -165,43 +232,60 @@ public class AuthServiceImpl implements AuthService {
 
     @Override
     public AuthResponse login(LoginRequest request) {
-        User user = userRepository.findByEmail(request.getEmail()).orElse(null);
+        // a user created on another node in the last auth.emailFilter.refreshInterval may still be "not found" here
+        UserCredentials user = knownEmails.mightExist(request.getEmail())
+                ? replicaRouting.readFor(request.getEmail(), () -> userRepository.findCredentialsByEmail(request.getEmail())).orElse(null)
+                : null;
 
         if(user==null)
             return AuthResponse.builder().success(false).message("user  not found ").build();
-        if(!passwordEncoder.matches(request.getPassword(),user.getPassword()))
+        if(!passwordHasher.matches(request.getPassword(),user.password()))
             return AuthResponse.builder().success(false).message("invalid password").build();
-        if(!user.isEmailVerified())
+        if(!user.emailVerified())
             return AuthResponse.builder().success(false).message("Please verify your email first").build();
+        if(!user.accountNonLocked())
+            return AuthResponse.builder().success(false).message("Account is locked").build();
+
+        upgradePasswordHash(user, request.getPassword());
 
-        String  access = jwtUtil.generateToken(user.getEmail(),user.getRole().name());
-        String refresh = jwtUtil.generateRefreshToken((user.getEmail()));
+        String  access = jwtUtil.generateToken(user);
+        String refresh = refreshTokenService.issue(user);
 
         return AuthResponse.builder()
                 .success(true)
                 .message("Login successful!")
                 .token(access)
                 .refreshToken(refresh)
-                .role(user.getRole().name())
+                .role(user.role().name())
                 .user(mapToUserDto(user))
                 .build();
     }
+    // re-hash with the current algorithm and cost while the raw password is at hand
+    private void upgradePasswordHash(UserCredentials user, String rawPassword) {
+        if(!passwordHasher.needsUpgrade(user.password()))
+            return;
+        String newHash;
+        try {
+            newHash = passwordHasher.encode(rawPassword);
+        } catch (ServiceOverloadedException e) {
+            return;   // login already succeeded, try again on a later one
+        }
+        userRepository.updatePassword(user.email(), newHash);
+        userCache.invalidate(user.email());
+    }
+
     // ---------------------------------------------
     // FORGOT EMAIL
     // ---------------------------------------------
     @Override
+    @Transactional
     public AuthResponse forgotPassword(ForgotPasswordRequest request) {
-        User user = userRepository.findByEmail(request.getEmail()).orElse(null);
+        UserCredentials user = userCache.findByEmail(request.getEmail()).orElse(null);
 
         if(user == null )
             return AuthResponse.builder().success(false).message("user not found").build();
 
-        String resetOtp = generateOtp();
-        user.setResetOtp(resetOtp);
-        user.setResetOtpExpiry(otpExpiry());
-        userRepository.save(user);
-
-        emailService.sendPasswordResetOtp(user.getEmail(),resetOtp);
+        emailService.sendPasswordResetOtp(user.email(), otpStore.issue(OtpPurpose.RESET_PASSWORD, user.email()));
 
         return AuthResponse.builder()
                 .success(true)
@@ -216,20 +300,34 @@ public class AuthServiceImpl implements AuthService {
 
     @Override
     public AuthResponse resetPassword(ResetPasswordRequest request) {
-        User user = userRepository.findByEmail(request.getEmail()).orElse(null);
-
+        OtpStore.Result result = otpStore.verify(OtpPurpose.RESET_PASSWORD, request.getEmail(), request.getOtp());
+        if(result == OtpStore.Result.NOT_FOUND && userCache.findByEmail(request.getEmail()).isEmpty())
+            return AuthResponse.builder().success(false).message("user not found").build();
+        if(result != OtpStore.Result.VALID)
+            return otpFailure(result);
+
+        // hashed before the transaction so BCrypt doesn't hold a DB connection
+        String newHash = passwordHasher.encode(request.getNewPassword());
+        // password, token version and the revocation entry commit together (with sharding the user is on another
+        // database and commits on its own, before the revocation entry)
+        User user = transactionTemplate.execute(tx -> {
+            User managed = userRepository.findByEmail(request.getEmail()).orElse(null);
+            if(managed == null)
+                return null;
+            managed.setPassword(newHash);
+            // invalidates every token issued with the old password
+            managed.setTokenVersion(managed.getTokenVersion() + 1);
+            // a no-op for the managed entity; with sharding the user comes detached from their shard's own
+            // transaction and this is the write
+            userRepository.save(managed);
+            tokenRevocationList.revokeAllBefore(managed.getEmail(), Instant.now());
+            return managed;
+        });
         if(user == null)
             return AuthResponse.builder().success(false).message("user not found").build();
 
-        if(!request.getOtp().equals(user.getResetOtp()))
-            return AuthResponse.builder().success(false).message("invalid OTP").build();
-        if(user.getResetOtpExpiry().isBefore(LocalDateTime.now()))
-            return AuthResponse.builder().success(false).message("OTP Expired").build();
-
-        user.setPassword((passwordEncoder.encode((request.getNewPassword()))));
-        user.setResetOtp(null);
-        user.setResetOtpExpiry(null);
-        userRepository.save(user);
+        accountStateRegistry.recordChange(user.getEmail(), user.getTokenVersion());
+        userCache.invalidate(user.getEmail());
 
         return AuthResponse.builder()
                 .success(true)
@@ -244,22 +342,102 @@ public class AuthServiceImpl implements AuthService {
 
     @Override
     public AuthResponse refreshToken(String refreshToken) {
-        String email = jwtUtil.extractEmail(refreshToken);
-        User user = userRepository.findByEmail(email).orElse(null);
+        VerifiedToken verified;
+        try {
+            verified = jwtUtil.verify(refreshToken);
+        } catch (JwtException | IllegalArgumentException e) {
+            return AuthResponse.builder().success(false).message("Invalid refresh token").build();
+        }
+        if(tokenRevocationList.isRevoked(verified))
+            return AuthResponse.builder().success(false).message("Invalid refresh token").build();
+        String email = verified.subject();
+        UserCredentials user = userCache.findByEmail(email).orElse(null);
         if(user == null)
             return AuthResponse.builder().success(false).message("user not found").build();
-        if(!jwtUtil.isTokenValid(refreshToken , user.getEmail()))
+        AccountState state = verified.accountState();
+        if(state != null && state.tokenVersion() < user.tokenVersion())
+            return AuthResponse.builder().success(false).message("Invalid refresh token").build();
+        if(!user.accountNonLocked())
+            return AuthResponse.builder().success(false).message("Account is locked").build();
+
+        // one-time use, the presented token is spent and a new one of the same family is returned
+        String newRefresh = refreshTokenService.rotate(verified, user);
+        if(newRefresh == null)
             return AuthResponse.builder().success(false).message("Invalid refresh token").build();
 
-        String newAccess = jwtUtil.generateToken(email, user.getRole().name());
+        String newAccess = jwtUtil.generateToken(user);
         return AuthResponse.builder()
                 .success(true)
                 .message("Token refreshed!")
                 .token(newAccess)
-                .refreshToken(refreshToken)
-                .role(user.getRole().name())
+                .refreshToken(newRefresh)
+                .role(user.role().name())
+                .user(mapToUserDto(user))
+                .build();
+
+    }
+
+    // ------------------------------------------------
+    // LOCK / UNLOCK ACCOUNT
+    // -----------------------------------------------
+
+    @Override
+    public AuthResponse updateAccountLock(String email, boolean locked) {
+        // read-modify-write of tokenVersion, a lagging replica would lose an increment
+        User user = replicaRouting.onPrimary(() -> userRepository.findByEmail(email)).orElse(null);
+        if(user == null)
+            return AuthResponse.builder().success(false).message("user not found").build();
+
+        user.setAccountNonLocked(!locked);
+        user.setTokenVersion(user.getTokenVersion() + 1);
+        userRepository.save(user);
+        accountStateRegistry.recordChange(user.getEmail(), user.getTokenVersion());
+        userCache.invalidate(user.getEmail());
+        tokenRevocationList.revokeAllBefore(user.getEmail(), Instant.now());
+
+        return AuthResponse.builder()
+                .success(true)
+                .message(locked ? "Account locked" : "Account unlocked")
                 .user(mapToUserDto(user))
                 .build();
+    }
+
+    // ------------------------------------------------
+    // LOGOUT / REVOKE
+    // -----------------------------------------------
+
+    @Override
+    public AuthResponse logout(String accessToken, String refreshToken) {
+        boolean revoked = revokeIfValid(accessToken) | revokeIfValid(refreshToken);
+        if(!revoked)
+            return AuthResponse.builder().success(false).message("No valid token to revoke").build();
+
+        return AuthResponse.builder()
+                .success(true)
+                .message("Logged out")
+                .build();
+    }
+
+    @Override
+    public AuthResponse revokeAllTokens(String email) {
+        tokenRevocationList.revokeAllBefore(email, Instant.now());
+        return AuthResponse.builder()
+                .success(true)
+                .message("All tokens revoked")
+                .build();
+    }
 
+    private boolean revokeIfValid(String token) {
+        if(token == null || token.isBlank())
+            return false;
+        try {
+            VerifiedToken verified = jwtUtil.verify(token);
+            if(verified.id() == null)
+                return false;
+            tokenRevocationList.revoke(verified.id(), verified.expiresAt());
+            return true;
+        } catch (JwtException | IllegalArgumentException e) {
+            return false;
+        }
     }
 }
@@ -0,0 +1,276 @@
+package in.nikhilsaini.authify.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import in.nikhilsaini.authify.datasource.ReplicaRouting;
+import in.nikhilsaini.authify.entity.RefreshToken;
+import in.nikhilsaini.authify.dto.UserCredentials;
+import in.nikhilsaini.authify.repository.RefreshTokenRepository;
+import in.nikhilsaini.authify.security.JwtUtil;
+import in.nikhilsaini.authify.security.VerifiedToken;
+import in.nikhilsaini.authify.service.RefreshTokenService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+// Refresh tokens with one-time-use rotation and reuse detection per family.
+// Lookups hit an in-memory index (bounded, entries expire with the token); a miss falls back to the DB,
+// so evicted entries and tokens issued by other nodes still resolve. A token is spent in the index first,
+// which is what keeps a node from rotating it twice.
+// Writes are queued and flushed in one transaction every auth.refresh.flushInterval, keeping the refresh
+// endpoint free of synchronous DB writes. The flush spends each token with a conditional UPDATE; one that
+// changes nothing was rotated on another node in the meantime, which is reuse like any other and revokes the
+// family. So a token presented to two nodes within a flush interval is rotated on both, and the family is
+// revoked by the next flush; each node refuses its tokens once its own flush has seen that.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RefreshTokenServiceImpl implements RefreshTokenService {
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final JwtUtil jwtUtil;
+    private final TransactionTemplate transactionTemplate;
+    private final ReplicaRouting replicaRouting;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${auth.refresh.indexSize:1000000}")
+    private long indexSize;
+
+    @Value("${auth.jwt.refreshTokenExpiration}")
+    private Long refreshTokenExpiration;
+
+    // writes that keep failing are dropped after this many flushes (auth.refresh.dropped): a dropped insert
+    // logs its user out on the next refresh, a dropped spend leaves the token spendable on other nodes
+    private static final int MAX_FLUSH_ATTEMPTS = 5;
+
+    // in-memory view of a token; used flips exactly once
+    private static final class TokenState {
+        final String familyId;
+        final long expiresAt;
+        final AtomicBoolean used;
+
+        TokenState(String familyId, long expiresAt, boolean used) {
+            this.familyId = familyId;
+            this.expiresAt = expiresAt;
+            this.used = new AtomicBoolean(used);
+        }
+    }
+
+    private record PendingInsert(RefreshToken token, int attempts) {
+    }
+
+    private record PendingSpend(String tokenId, String familyId, Instant usedAt, int attempts) {
+    }
+
+    private Cache<String, TokenState> index;
+    private Counter droppedInserts;
+    private Counter droppedSpends;
+
+    // familyId -> time after which no token of the family can still be valid
+    private final ConcurrentHashMap<String, Long> revokedFamilies = new ConcurrentHashMap<>();
+
+    // write-behind queues; revocations are retried until they make it
+    private final ConcurrentLinkedQueue<PendingInsert> pendingInserts = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<PendingSpend> pendingSpends = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<String> pendingRevokedFamilies = new ConcurrentLinkedQueue<>();
+
+    @PostConstruct
+    void init() {
+        index = Caffeine.newBuilder()
+                .maximumSize(indexSize)
+                .expireAfter(new Expiry<String, TokenState>() {
+                    @Override
+                    public long expireAfterCreate(String key, TokenState value, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(value.expiresAt - System.currentTimeMillis(), 0));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, TokenState value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, TokenState value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        droppedInserts = Counter.builder("auth.refresh.dropped").tag("write", "insert").register(meterRegistry);
+        droppedSpends = Counter.builder("auth.refresh.dropped").tag("write", "spend").register(meterRegistry);
+    }
+
+    @Override
+    public String issue(UserCredentials user) {
+        return issue(user, UUID.randomUUID().toString());
+    }
+
+    @Override
+    public String rotate(VerifiedToken presented, UserCredentials user) {
+        String tokenId = presented.id();
+        if (tokenId == null || presented.isAccessToken()) {
+            return null;    // access tokens and refresh tokens from before the store existed
+        }
+
+        TokenState state = index.getIfPresent(tokenId);
+        if (state == null) {
+            state = loadFromDb(tokenId);
+            if (state == null) {
+                return null;
+            }
+        }
+
+        if (state.expiresAt < System.currentTimeMillis() || revokedFamilies.containsKey(state.familyId)) {
+            return null;
+        }
+        if (!state.used.compareAndSet(false, true)) {
+            // somebody already rotated this token: assume it leaked and kill the family
+            log.warn("Refresh token reuse detected for {}, revoking family {}", user.email(), state.familyId);
+            revokeFamily(state.familyId);
+            return null;
+        }
+        pendingSpends.add(new PendingSpend(tokenId, state.familyId, Instant.now(), 0));
+        return issue(user, state.familyId);
+    }
+
+    private String issue(UserCredentials user, String familyId) {
+        String tokenId = UUID.randomUUID().toString();
+        Instant now = Instant.now();
+        Instant expiresAt = jwtUtil.refreshTokenExpiry();
+
+        index.put(tokenId, new TokenState(familyId, expiresAt.toEpochMilli(), false));
+        pendingInserts.add(new PendingInsert(RefreshToken.builder()
+                .id(tokenId)
+                .familyId(familyId)
+                .email(user.email())
+                .issuedAt(now)
+                .expiresAt(expiresAt)
+                .build(), 0));
+        return jwtUtil.generateRefreshToken(user, tokenId, expiresAt);
+    }
+
+    private TokenState loadFromDb(String tokenId) {
+        // the used / revoked flags must be current, or a replayed token would pass
+        RefreshToken row = replicaRouting.onPrimary(() -> refreshTokenRepository.findById(tokenId)).orElse(null);
+        if (row == null || row.getExpiresAt().isBefore(Instant.now())) {
+            return null;
+        }
+        if (row.isRevoked()) {
+            revokedFamilies.putIfAbsent(row.getFamilyId(), row.getExpiresAt().toEpochMilli() + refreshTokenExpiration);
+        }
+        TokenState state = new TokenState(row.getFamilyId(), row.getExpiresAt().toEpochMilli(), row.getUsedAt() != null);
+        TokenState raced = index.asMap().putIfAbsent(tokenId, state);
+        return raced != null ? raced : state;
+    }
+
+    private void revokeFamily(String familyId) {
+        // a family can't outlive the last token rotated into it
+        if (revokedFamilies.putIfAbsent(familyId, System.currentTimeMillis() + refreshTokenExpiration) == null) {
+            pendingRevokedFamilies.add(familyId);
+        }
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${auth.refresh.flushInterval:200ms}")
+    public synchronized void flush() {
+        if (pendingInserts.isEmpty() && pendingSpends.isEmpty() && pendingRevokedFamilies.isEmpty()) {
+            return;
+        }
+        List<PendingInsert> inserts = drain(pendingInserts);
+        List<PendingSpend> spends = drain(pendingSpends);
+        Set<String> families = new HashSet<>(drain(pendingRevokedFamilies));
+
+        try {
+            Set<String> spentElsewhere = transactionTemplate.execute(tx -> {
+                // inserts first, a token can be issued and spent within the same window
+                refreshTokenRepository.saveAll(inserts.stream().map(PendingInsert::token).toList());
+                refreshTokenRepository.flush();
+                Set<String> reused = new HashSet<>();
+                for (PendingSpend spend : spends) {
+                    if (refreshTokenRepository.spend(spend.tokenId(), spend.usedAt()) == 0) {
+                        reused.add(spend.familyId());
+                    }
+                }
+                Set<String> revoke = new HashSet<>(families);
+                revoke.addAll(reused);
+                // a family revoked on another node while these were queued must not get a live token back
+                Set<String> inserted = inserts.stream().map(i -> i.token().getFamilyId()).collect(Collectors.toSet());
+                if (!inserted.isEmpty()) {
+                    revoke.addAll(refreshTokenRepository.findRevokedFamilies(inserted));
+                }
+                if (!revoke.isEmpty()) {
+                    refreshTokenRepository.revokeFamilies(revoke);
+                }
+                return reused;
+            });
+            for (String familyId : spentElsewhere) {
+                log.warn("Refresh token of family {} was already spent or revoked elsewhere, revoked the family", familyId);
+                revokedFamilies.putIfAbsent(familyId, System.currentTimeMillis() + refreshTokenExpiration);
+            }
+        } catch (RuntimeException e) {
+            // keep the work for the next round instead of losing it, but not forever
+            int dropped = 0;
+            for (PendingInsert insert : inserts) {
+                if (insert.attempts() + 1 < MAX_FLUSH_ATTEMPTS) {
+                    pendingInserts.add(new PendingInsert(insert.token(), insert.attempts() + 1));
+                } else {
+                    index.invalidate(insert.token().getId());
+                    droppedInserts.increment();
+                    dropped++;
+                }
+            }
+            for (PendingSpend spend : spends) {
+                if (spend.attempts() + 1 < MAX_FLUSH_ATTEMPTS) {
+                    pendingSpends.add(new PendingSpend(spend.tokenId(), spend.familyId(), spend.usedAt(),
+                            spend.attempts() + 1));
+                } else {
+                    droppedSpends.increment();
+                    dropped++;
+                }
+            }
+            pendingRevokedFamilies.addAll(families);
+            if (dropped > 0) {
+                log.error("Refresh token write-behind failed {} times, dropped {} writes", MAX_FLUSH_ATTEMPTS, dropped, e);
+            } else {
+                log.error("Refresh token write-behind failed, retrying next round", e);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${auth.refresh.cleanupInterval:1h}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        revokedFamilies.values().removeIf(until -> until < now);
+        int deleted = transactionTemplate.execute(tx -> refreshTokenRepository.deleteExpired(Instant.now()));
+        if (deleted > 0) {
+            log.info("Purged {} expired refresh tokens", deleted);
+        }
+    }
+
+    private static <T> List<T> drain(ConcurrentLinkedQueue<T> queue) {
+        List<T> items = new ArrayList<>();
+        for (T item; (item = queue.poll()) != null; ) {
+            items.add(item);
+        }
+        return items;
+    }
+}
@@ -1,5 +1,8 @@
 package in.nikhilsaini.authify.service.impl;
 
+import in.nikhilsaini.authify.cache.KnownEmails;
+import in.nikhilsaini.authify.cache.UserCache;
+import in.nikhilsaini.authify.datasource.ReplicaRouting;
 import in.nikhilsaini.authify.entity.User;
 import in.nikhilsaini.authify.repository.UserRepository;
 import in.nikhilsaini.authify.service.UserService;
@@ -12,25 +15,35 @@ import org.springframework.stereotype.Service;
 public class UserServiceImpl  implements UserService {
 
     private final UserRepository userRepository;
+    private final UserCache userCache;
+    private final KnownEmails knownEmails;
+    private final ReplicaRouting replicaRouting;
 
 
     @Override
     public User findByEmail(String email){
-        return userRepository.findByEmail(email).orElse(null);
+        // the whole entity, callers may change and save it; UserCache only has the auth projection
+        return knownEmails.mightExist(email)
+                ? replicaRouting.readFor(email, () -> userRepository.findByEmail(email)).orElse(null)
+                : null;
 
     }
 
     @Override
     public User saveUser(User user) {
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        userCache.invalidate(saved.getEmail());
+        knownEmails.add(saved.getEmail());
+        return saved;
     }
     @Override
     public boolean existsByEmail(String email){
-        return userRepository.existsByEmail(email);
+        return knownEmails.mightExist(email) && replicaRouting.readFor(email, () -> userRepository.existsByEmail(email));
     }
 
     @Override
     public void updateUser(User user) {
         userRepository.save(user);
+        userCache.invalidate(user.getEmail());
     }
 }
@@ -0,0 +1,120 @@
+package in.nikhilsaini.authify.shard;
+
+import in.nikhilsaini.authify.entity.TempUser;
+import in.nikhilsaini.authify.entity.User;
+import in.nikhilsaini.authify.repository.TempUserRepository;
+import in.nikhilsaini.authify.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+// With sharding, the UserRepository / TempUserRepository the services get: every call goes to the repository of
+// the shard that owns the email it is about, which is
+//  - an argument named email (findByEmail, existsByEmail, findCredentialsByEmail, updatePassword, ...),
+//  - the email of a User / TempUser argument (save, delete),
+//  - the id of TempUserRepository (findById, existsById, deleteById), which is the email.
+// Anything else isn't keyed by email and throws; code that needs every user walks UserShards.all() instead.
+// Each call runs in its own transaction on its shard, it doesn't join a transaction of the caller's.
+public final class EmailRoutedRepository implements InvocationHandler {
+
+    private final Class<?> type;
+    private final Function<UserShard, Object> repository;
+    private final UserShards shards;
+    private final Resharder resharder;   // null unless resharding
+    private final Map<String, Counter> calls = new HashMap<>();
+
+    private EmailRoutedRepository(Class<?> type, Function<UserShard, Object> repository, UserShards shards,
+                                  Resharder resharder, MeterRegistry meterRegistry) {
+        this.type = type;
+        this.repository = repository;
+        this.shards = shards;
+        this.resharder = resharder;
+        for (UserShard shard : shards.all()) {
+            calls.put(shard.name(), Counter.builder("auth.shards.calls")
+                    .tags("shard", shard.name(), "repository", type.getSimpleName()).register(meterRegistry));
+        }
+    }
+
+    public static UserRepository users(UserShards shards, Resharder resharder, MeterRegistry meterRegistry) {
+        return create(UserRepository.class, UserShard::users, shards, resharder, meterRegistry);
+    }
+
+    public static TempUserRepository tempUsers(UserShards shards, Resharder resharder, MeterRegistry meterRegistry) {
+        return create(TempUserRepository.class, UserShard::tempUsers, shards, resharder, meterRegistry);
+    }
+
+    private static <R> R create(Class<R> type, Function<UserShard, R> repository, UserShards shards, Resharder resharder,
+                        MeterRegistry meterRegistry) {
+        EmailRoutedRepository handler = new EmailRoutedRepository(type, repository::apply, shards, resharder,
+                meterRegistry);
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return switch (method.getName()) {
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                default -> "sharded " + type.getSimpleName();
+            };
+        }
+        int key = keyIndex(method, args);
+        if (key < 0) {
+            throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName()
+                    + " isn't keyed by email and can't be routed to a shard, go through UserShards.all()");
+        }
+        String email = email(args[key]);
+        UserShard shard;
+        if (email == null) {
+            // finds nothing and saves nothing on any shard, let the first one say so
+            shard = shards.all().get(0);
+        } else {
+            if (resharder != null) {
+                resharder.moveIfBehind(email);
+            }
+            shard = shards.forEmail(email);
+        }
+        calls.get(shard.name()).increment();
+        try {
+            return method.invoke(repository.apply(shard), args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private int keyIndex(Method method, Object[] args) {
+        Parameter[] parameters = method.getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            if (args[i] instanceof User || args[i] instanceof TempUser) {
+                return i;
+            }
+            if (parameters[i].getType() == String.class && parameters[i].getName().equals("email")) {
+                return i;
+            }
+            if (type == TempUserRepository.class && method.getName().endsWith("ById")
+                    && (args[i] == null || args[i] instanceof String)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String email(Object key) {
+        if (key instanceof User user) {
+            return user.getEmail();
+        }
+        if (key instanceof TempUser temp) {
+            return temp.getEmail();
+        }
+        return (String) key;
+    }
+}
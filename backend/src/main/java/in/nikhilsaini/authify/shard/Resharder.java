@@ -0,0 +1,141 @@
+package in.nikhilsaini.authify.shard;
+
+import in.nikhilsaini.authify.entity.TempUser;
+import in.nikhilsaini.authify.entity.User;
+import in.nikhilsaini.authify.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.List;
+
+// Only while auth.datasource.shards.previousUrls is set: moves users and pending registrations whose shard changed
+// with the new ring from their previous shard to their current one.
+// In the background every auth.datasource.shards.resharding.interval a sweep walks the previous shards and moves
+// every row found on the wrong one; in front of every lookup by email (EmailRoutedRepository) that one email is
+// moved first if it's still behind, so requests never see a user on the old shard or write to it. Once a sweep
+// finds nothing to move the resharding is over for this node and lookups go straight to the current shard.
+// A move copies the row to the new shard unless it is there already (moved by another node, and maybe changed
+// since), then deletes it from the old one, so a half-done move is finished by the next one. The copy gets a
+// new id from the new shard, ids are per shard; the email and everything else are kept.
+// All nodes must run the new ring (with previousUrls) before the sweep is trusted: a node still on the old ring
+// keeps writing to the old shards.
+@Slf4j
+public class Resharder {
+
+    private static final int PAGE_SIZE = 1_000;
+
+    private final UserShards shards;
+    private final Counter movedUsers;
+    private final Counter movedTempUsers;
+
+    public Resharder(UserShards shards, MeterRegistry meterRegistry) {
+        this.shards = shards;
+        this.movedUsers = Counter.builder("auth.shards.moved").tag("table", "tbl_users").register(meterRegistry);
+        this.movedTempUsers = Counter.builder("auth.shards.moved").tag("table", "temp_user").register(meterRegistry);
+        Gauge.builder("auth.shards.resharding", shards, s -> s.resharding() ? 1 : 0).register(meterRegistry);
+    }
+
+    // before a lookup by email
+    public void moveIfBehind(String email) {
+        UserShard from = shards.previousOwner(email);
+        if (from != null) {
+            UserShard to = shards.forEmail(email);
+            moveUser(email, from, to);
+            moveTempUser(email, from, to);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${auth.datasource.shards.resharding.initialDelay:10s}",
+            fixedDelayString = "${auth.datasource.shards.resharding.interval:1m}")
+    void sweep() {
+        if (!shards.resharding()) {
+            return;
+        }
+        long started = System.nanoTime();
+        long moved = 0;
+        for (UserShard from : shards.previousShards()) {
+            moved += sweepUsers(from) + sweepTempUsers(from);
+        }
+        if (moved == 0) {
+            shards.finishResharding();
+            log.info("Resharding done, no user left on a previous shard; auth.datasource.shards.previousUrls can go");
+        } else {
+            log.info("Resharding: moved {} rows in {} ms", moved, (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    private long sweepUsers(UserShard from) {
+        long moved = 0;
+        long afterId = 0;
+        List<UserRepository.IdAndEmail> page;
+        do {
+            page = from.users().findEmailsAfter(afterId, PageRequest.of(0, PAGE_SIZE));
+            for (UserRepository.IdAndEmail user : page) {
+                afterId = user.getId();
+                UserShard to = shards.forEmail(user.getEmail());
+                if (!to.name().equals(from.name()) && moveUser(user.getEmail(), from, to)) {
+                    moved++;
+                }
+            }
+        } while (page.size() == PAGE_SIZE);
+        return moved;
+    }
+
+    private long sweepTempUsers(UserShard from) {
+        long moved = 0;
+        String afterEmail = "";
+        List<String> page;
+        do {
+            page = from.tempUsers().findEmailsAfter(afterEmail, PageRequest.of(0, PAGE_SIZE));
+            for (String email : page) {
+                afterEmail = email;
+                UserShard to = shards.forEmail(email);
+                if (!to.name().equals(from.name()) && moveTempUser(email, from, to)) {
+                    moved++;
+                }
+            }
+        } while (page.size() == PAGE_SIZE);
+        return moved;
+    }
+
+    // false if there was nothing to move
+    private boolean moveUser(String email, UserShard from, UserShard to) {
+        User user = from.users().findByEmail(email).orElse(null);
+        if (user == null) {
+            return false;
+        }
+        try {
+            to.transactionTemplate().executeWithoutResult(tx -> {
+                if (to.users().existsByEmail(email)) {
+                    return;
+                }
+                to.users().save(user.toBuilder().id(null).build());
+                to.users().restoreCreatedAt(email, user.getCreatedAt());
+            });
+        } catch (DataIntegrityViolationException e) {
+            // moved by another node at the same moment
+        }
+        from.users().deleteById(user.getId());
+        movedUsers.increment();
+        return true;
+    }
+
+    private boolean moveTempUser(String email, UserShard from, UserShard to) {
+        TempUser temp = from.tempUsers().findById(email).orElse(null);
+        if (temp == null) {
+            return false;
+        }
+        // one already on the new shard is a newer registration
+        if (!to.tempUsers().existsById(email)) {
+            to.tempUsers().save(temp);
+        }
+        from.tempUsers().delete(temp);
+        movedTempUsers.increment();
+        return true;
+    }
+}
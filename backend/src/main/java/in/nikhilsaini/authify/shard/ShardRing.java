@@ -0,0 +1,48 @@
+package in.nikhilsaini.authify.shard;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+// Consistent hashing of normalized emails onto shard names. Every shard owns `virtualNodes` points on a 64-bit
+// ring and an email belongs to the first point at or after its own hash, so adding or removing a shard only moves
+// the emails next to its points (about 1/N of them) and the rest stay where they are.
+// The hash is fixed (no String.hashCode, no seed): every node and every restart has to agree on the owner.
+final class ShardRing {
+
+    private final NavigableMap<Long, String> points = new TreeMap<>();
+
+    ShardRing(Collection<String> shards, int virtualNodes) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("a shard ring needs at least one shard");
+        }
+        for (String shard : shards) {
+            for (int i = 0; i < virtualNodes; i++) {
+                // a collision keeps the first shard's point, the same way on every node
+                points.putIfAbsent(hash64(shard + "#" + i), shard);
+            }
+        }
+    }
+
+    // key is a normalized email (UserShards.key)
+    String ownerOf(String key) {
+        Map.Entry<Long, String> point = points.ceilingEntry(hash64(key));
+        return (point != null ? point : points.firstEntry()).getValue();
+    }
+
+    // 64-bit FNV-1a over the chars followed by the MurmurHash3 finalizer, as in BloomFilter
+    private static long hash64(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
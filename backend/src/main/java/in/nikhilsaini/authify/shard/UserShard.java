@@ -0,0 +1,30 @@
+package in.nikhilsaini.authify.shard;
+
+import in.nikhilsaini.authify.repository.TempUserRepository;
+import in.nikhilsaini.authify.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+// One database holding tbl_users and temp_user, with its own persistence unit: the repositories here only see
+// this shard and their transactions (transactionTemplate) are this database's alone.
+public record UserShard(String name, UserRepository users, TempUserRepository tempUsers, DataSource dataSource,
+                        EntityManagerFactory entityManagerFactory, TransactionTemplate transactionTemplate) {
+
+    // one instance per name (UserShards), the name is enough to tell them apart
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof UserShard shard && name.equals(shard.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,131 @@
+package in.nikhilsaini.authify.shard;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Where users live. Without auth.datasource.shards.urls that is one "shard", the regular database with the regular
+// repositories, and everything here is trivial. With it, users and pending registrations are spread over the
+// configured databases by a consistent hash of the normalized email (ShardRing); see UserShardsConfig.
+// Lookups by email go to one shard through the UserRepository / TempUserRepository everybody injects. Jobs over
+// the whole table (KnownEmails, ExpiredOtpPurger, export / import) walk all() instead: ids are per shard, so
+// nothing that isn't keyed by email can be routed.
+// While resharding (auth.datasource.shards.previousUrls set) emails whose owner changed may still sit on their
+// previous shard until the Resharder has moved them; previousOwner() says where to look.
+@Slf4j
+public class UserShards implements AutoCloseable {
+
+    private final Map<String, UserShard> shards;
+    private final ShardRing ring;
+    private final Map<String, UserShard> previousShards;
+    private final ShardRing previousRing;
+    private final List<AutoCloseable> resources;
+    private volatile boolean resharding;
+
+    private UserShards(Map<String, UserShard> shards, ShardRing ring, Map<String, UserShard> previousShards,
+                       ShardRing previousRing, List<AutoCloseable> resources) {
+        this.shards = shards;
+        this.ring = ring;
+        this.previousShards = previousShards;
+        this.previousRing = previousRing;
+        this.resources = resources;
+        this.resharding = previousRing != null;
+    }
+
+    public static UserShards single(UserShard shard) {
+        return new UserShards(Map.of(shard.name(), shard), null, Map.of(), null, List.of());
+    }
+
+    // previous is empty unless resharding; a shard in both rings must be the same instance.
+    // resources are closed with this
+    public static UserShards sharded(List<UserShard> shards, List<UserShard> previous, int virtualNodes,
+                                     List<AutoCloseable> resources) {
+        Map<String, UserShard> current = byName(shards);
+        Map<String, UserShard> before = byName(previous);
+        return new UserShards(current, new ShardRing(current.keySet(), virtualNodes), before,
+                before.isEmpty() ? null : new ShardRing(before.keySet(), virtualNodes), List.copyOf(resources));
+    }
+
+    private static Map<String, UserShard> byName(List<UserShard> shards) {
+        Map<String, UserShard> byName = new LinkedHashMap<>();
+        for (UserShard shard : shards) {
+            if (byName.putIfAbsent(shard.name(), shard) != null) {
+                throw new IllegalArgumentException("duplicate shard name " + shard.name());
+            }
+        }
+        return byName;
+    }
+
+    public boolean sharded() {
+        return ring != null;
+    }
+
+    // the shard this email belongs to
+    public UserShard forEmail(String email) {
+        if (ring == null) {
+            return shards.values().iterator().next();
+        }
+        return shards.get(ring.ownerOf(key(email)));
+    }
+
+    // every shard that can hold users: the current ones plus, while resharding, the ones being drained
+    public List<UserShard> all() {
+        List<UserShard> all = new ArrayList<>(shards.values());
+        if (resharding) {
+            for (UserShard shard : previousShards.values()) {
+                if (!all.contains(shard)) {
+                    all.add(shard);
+                }
+            }
+        }
+        return all;
+    }
+
+    // where this email may still be if it hasn't been moved yet; null when it isn't moving (or nothing is)
+    public UserShard previousOwner(String email) {
+        if (!resharding) {
+            return null;
+        }
+        String previous = previousRing.ownerOf(key(email));
+        return previous.equals(ring.ownerOf(key(email))) ? null : previousShards.get(previous);
+    }
+
+    // current shard first, then previousOwner if any
+    public List<UserShard> locations(String email) {
+        UserShard previous = previousOwner(email);
+        return previous == null ? List.of(forEmail(email)) : List.of(forEmail(email), previous);
+    }
+
+    List<UserShard> previousShards() {
+        return List.copyOf(previousShards.values());
+    }
+
+    boolean resharding() {
+        return resharding;
+    }
+
+    // called by the Resharder once nothing is left on a previous owner
+    void finishResharding() {
+        resharding = false;
+    }
+
+    // MySQL compares emails case-insensitively, so spellings of one email must land on one shard
+    public static String key(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public void close() {
+        for (AutoCloseable resource : resources) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                log.warn("Closing {} failed: {}", resource, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package in.nikhilsaini.authify.transfer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+// RFC 4180 CSV: comma separated, fields containing a comma, quote or line break are quoted, quotes doubled.
+// Reads one record at a time from the stream, so memory is bounded by the longest record.
+final class Csv {
+
+    // a user record is a few hundred characters; anything longer is a broken quote swallowing the file
+    private static final int MAX_RECORD_LENGTH = 65_536;
+
+    private Csv() {
+    }
+
+    static final class RecordReader {
+
+        private final Reader in;
+        private int pending = -2;   // one character of look-ahead, -2 = none
+        private long line = 1;
+        private long recordLine;    // line the last record started on, for error messages
+        private int recordLength;
+
+        RecordReader(Reader in) {
+            this.in = in;
+        }
+
+        long line() {
+            return recordLine;
+        }
+
+        // null at end of input
+        List<String> next() throws IOException {
+            recordLine = line;
+            recordLength = 0;
+            int c = read();
+            if (c < 0) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean wasQuoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c < 0) {
+                        throw new IOException("Unterminated quoted field in the record on line " + recordLine);
+                    }
+                    if (c == '"') {
+                        int next = read();
+                        if (next == '"') {
+                            append(field, '"');
+                        } else {
+                            quoted = false;
+                            c = next;
+                            continue;
+                        }
+                    } else {
+                        append(field, (char) c);
+                    }
+                } else if (c == '"' && field.isEmpty() && !wasQuoted) {
+                    quoted = true;
+                    wasQuoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                    wasQuoted = false;
+                } else if (c == '\n' || c == '\r' || c < 0) {
+                    if (c == '\r') {
+                        int next = read();
+                        if (next != '\n') {
+                            pending = next;
+                        }
+                    }
+                    fields.add(field.toString());
+                    return fields;
+                } else {
+                    append(field, (char) c);
+                }
+                c = read();
+            }
+        }
+
+        private void append(StringBuilder field, char c) throws IOException {
+            if (++recordLength > MAX_RECORD_LENGTH) {
+                throw new IOException("Record on line " + recordLine + " is longer than " + MAX_RECORD_LENGTH + " characters");
+            }
+            field.append(c);
+        }
+
+        private int read() throws IOException {
+            int c;
+            if (pending != -2) {
+                c = pending;
+                pending = -2;
+            } else {
+                c = in.read();
+            }
+            if (c == '\n') {
+                line++;
+            }
+            return c;
+        }
+    }
+
+    static void writeRecord(Writer out, Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            if (values[i] != null) {
+                writeField(out, values[i].toString());
+            }
+        }
+        out.write('\n');
+    }
+
+    private static void writeField(Writer out, String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+}
@@ -0,0 +1,13 @@
+package in.nikhilsaini.authify.transfer;
+
+// One input row of UserImporter; NDJSON fields / CSV columns of the same names, anything else is ignored
+record ImportedUser(
+        String email,
+        String name,
+        String password,            // hash, see UserImporter
+        String role,                // default USER
+        String provider,            // default LOCAL
+        Boolean emailVerified,      // default true
+        Boolean accountNonLocked    // default true
+) {
+}
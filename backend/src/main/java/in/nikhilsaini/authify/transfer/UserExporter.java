@@ -0,0 +1,153 @@
+package in.nikhilsaini.authify.transfer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import in.nikhilsaini.authify.enums.TransferFormat;
+import in.nikhilsaini.authify.shard.UserShard;
+import in.nikhilsaini.authify.shard.UserShards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+// Streams tbl_users out in primary-key order, in the format UserImporter reads.
+// One query, read through a cursor auth.transfer.exportFetchSize rows at a time and written straight to the
+// response; no entities, no persistence context, no list of users. On MySQL the driver only honours the fetch
+// size with useCursorFetch=true in DB_URL, without it the whole result set is buffered in memory.
+// Password hashes are left out unless asked for. With sharding the shards are streamed one after the other, each in
+// its own primary-key order; ids are per shard, so the same id can show up once per shard.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserExporter {
+
+    private static final String QUERY = "select id, email, name, password, role, provider, email_verified, "
+            + "account_non_locked, created_at from tbl_users order by id";
+
+    private static final String[] COLUMNS = {"id", "email", "name", "role", "provider", "emailVerified",
+            "accountNonLocked", "createdAt"};
+
+    private final UserShards userShards;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${auth.transfer.exportFetchSize:1000}")
+    private int fetchSize;
+
+    private Counter exported;
+
+    @PostConstruct
+    void init() {
+        exported = Counter.builder("auth.transfer.exported").register(meterRegistry);
+    }
+
+    public long export(OutputStream out, TransferFormat format, boolean includePasswords) throws IOException {
+        long started = System.nanoTime();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 65_536);
+        RowWriter rows = format == TransferFormat.CSV ? csv(writer, includePasswords) : ndjson(writer, includePasswords);
+        long[] count = {0};
+        try {
+            for (UserShard shard : userShards.all()) {
+                JdbcTemplate cursor = new JdbcTemplate(shard.dataSource());
+                cursor.setFetchSize(fetchSize);
+                cursor.query(QUERY, rs -> {
+                    try {
+                        rows.write(rs);
+                    } catch (IOException e) {
+                        // client went away, stop reading the cursor
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0]++;
+                });
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            exported.increment(count[0]);
+        }
+        rows.finish();
+        writer.flush();
+        log.info("User export: {} rows as {} in {} ms", count[0], format, (System.nanoTime() - started) / 1_000_000);
+        return count[0];
+    }
+
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+
+        default void finish() throws IOException {
+        }
+    }
+
+    private static RowWriter csv(Writer writer, boolean includePasswords) throws IOException {
+        Object[] header = Arrays.copyOf(COLUMNS, COLUMNS.length + (includePasswords ? 1 : 0), Object[].class);
+        if (includePasswords) {
+            header[COLUMNS.length] = "password";
+        }
+        Csv.writeRecord(writer, header);
+        Object[] record = new Object[header.length];
+        return rs -> {
+            record[0] = rs.getLong("id");
+            record[1] = rs.getString("email");
+            record[2] = rs.getString("name");
+            record[3] = rs.getString("role");
+            record[4] = rs.getString("provider");
+            record[5] = rs.getBoolean("email_verified");
+            record[6] = rs.getBoolean("account_non_locked");
+            record[7] = instant(rs.getTimestamp("created_at"));
+            if (includePasswords) {
+                record[8] = rs.getString("password");
+            }
+            Csv.writeRecord(writer, record);
+        };
+    }
+
+    private RowWriter ndjson(Writer writer, boolean includePasswords) throws IOException {
+        JsonGenerator json = objectMapper.getFactory().createGenerator(writer);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        json.setRootValueSeparator(null);   // rows are separated by the newline below, not a space
+        return new RowWriter() {
+            @Override
+            public void write(ResultSet rs) throws SQLException, IOException {
+                json.writeStartObject();
+                json.writeNumberField("id", rs.getLong("id"));
+                json.writeStringField("email", rs.getString("email"));
+                json.writeStringField("name", rs.getString("name"));
+                if (includePasswords) {
+                    json.writeStringField("password", rs.getString("password"));
+                }
+                json.writeStringField("role", rs.getString("role"));
+                json.writeStringField("provider", rs.getString("provider"));
+                json.writeBooleanField("emailVerified", rs.getBoolean("email_verified"));
+                json.writeBooleanField("accountNonLocked", rs.getBoolean("account_non_locked"));
+                json.writeStringField("createdAt", instant(rs.getTimestamp("created_at")));
+                json.writeEndObject();
+                json.writeRaw('\n');
+            }
+
+            @Override
+            public void finish() throws IOException {
+                json.flush();
+            }
+        };
+    }
+
+    private static String instant(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toInstant().toString();
+    }
+}
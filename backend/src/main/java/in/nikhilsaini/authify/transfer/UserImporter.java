@@ -0,0 +1,324 @@
+package in.nikhilsaini.authify.transfer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import in.nikhilsaini.authify.cache.KnownEmails;
+import in.nikhilsaini.authify.dto.UserImportReport;
+import in.nikhilsaini.authify.entity.User;
+import in.nikhilsaini.authify.enums.AuthProvider;
+import in.nikhilsaini.authify.enums.Role;
+import in.nikhilsaini.authify.enums.TransferFormat;
+import in.nikhilsaini.authify.shard.UserShard;
+import in.nikhilsaini.authify.shard.UserShards;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+// Bulk import of accounts that already exist elsewhere, e.g. a legacy system.
+// Rows carry a password hash, never a password: "{bcrypt}...", "{argon2}...", "{pbkdf2}..." or a bare BCrypt
+// "$2a$..." like the rows from before the {id} prefix here; OAuth accounts have none. Hashes from other
+// algorithms can't be verified and are rejected, those users have to go through forgot-password.
+// The input is read a row at a time and inserted in chunks of auth.transfer.importChunkSize, each chunk in its
+// own EntityManager and transaction, as JDBC batches (pooled ids + hibernate.jdbc.batch_size). Nothing is kept
+// after a chunk except the counters, so memory doesn't grow with the input.
+// Emails that are already registered or repeated within a chunk are skipped. A chunk that still hits the unique
+// index (someone registered meanwhile) is redone row by row. The report goes to `progress` after every chunk.
+// With sharding a chunk is split by shard, each part checked and inserted on its own shard.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserImporter {
+
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final int MAX_EMAIL_LENGTH = 255;
+    private static final Pattern EMAIL = Pattern.compile("[^@\\s]+@[^@\\s]+");
+    private static final Pattern PASSWORD_HASH =
+            Pattern.compile("\\{(bcrypt|argon2|pbkdf2)}\\S+|\\$2[aby]?\\$\\d{2}\\$[./A-Za-z0-9]{53}");
+
+    private final UserShards userShards;
+    private final KnownEmails knownEmails;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${auth.transfer.importChunkSize:1000}")
+    private int chunkSize;
+
+    // user is null for rows that couldn't be read, error says why
+    private record Row(long line, ImportedUser user, String error) {
+    }
+
+    private interface RowSource {
+        Row next() throws IOException;   // null at end of input
+    }
+
+    public UserImportReport importUsers(InputStream in, TransferFormat format, Consumer<UserImportReport> progress) {
+        long started = System.nanoTime();
+        UserImportReport report = new UserImportReport();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 65_536);
+        List<Row> chunk = new ArrayList<>(chunkSize);
+        try {
+            RowSource source = format == TransferFormat.CSV ? csv(reader) : ndjson(reader);
+            Row row;
+            while ((row = source.next()) != null) {
+                report.setProcessed(report.getProcessed() + 1);
+                String error = row.error() != null ? row.error() : validate(row.user());
+                if (error != null) {
+                    fail(report, row.line(), error);
+                    continue;
+                }
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    importChunk(chunk, report);
+                    chunk.clear();
+                    progress.accept(report);
+                }
+            }
+        } catch (IOException e) {
+            // broken input (unterminated quote, ...); the rows before it are still imported
+            fail(report, -1, "import aborted: " + e.getMessage());
+        }
+        importChunk(chunk, report);
+        report.setDone(true);
+        progress.accept(report);
+        log.info("User import: {} rows, {} imported, {} skipped, {} failed in {} ms", report.getProcessed(),
+                report.getImported(), report.getSkipped(), report.getFailed(), (System.nanoTime() - started) / 1_000_000);
+        return report;
+    }
+
+    private RowSource ndjson(BufferedReader reader) {
+        ObjectReader rows = objectMapper.readerFor(ImportedUser.class);
+        long[] line = {0};
+        return () -> {
+            String json;
+            do {
+                json = reader.readLine();
+                line[0]++;
+            } while (json != null && json.isBlank());
+            if (json == null) {
+                return null;
+            }
+            try {
+                ImportedUser user = rows.readValue(json);
+                return user != null ? new Row(line[0], user, null) : new Row(line[0], null, "not a JSON object");
+            } catch (JsonProcessingException e) {
+                return new Row(line[0], null, "not a valid JSON object");
+            }
+        };
+    }
+
+    private RowSource csv(BufferedReader reader) throws IOException {
+        Csv.RecordReader records = new Csv.RecordReader(reader);
+        List<String> header = records.next();
+        if (header == null) {
+            return () -> null;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim(), i);
+        }
+        if (!columns.containsKey("email")) {
+            throw new IOException("CSV header has no email column");
+        }
+        return () -> {
+            List<String> fields;
+            do {
+                fields = records.next();
+            } while (fields != null && fields.size() == 1 && fields.get(0).isBlank());
+            if (fields == null) {
+                return null;
+            }
+            List<String> record = fields;
+            return new Row(records.line(), new ImportedUser(
+                    column(record, columns, "email"),
+                    column(record, columns, "name"),
+                    column(record, columns, "password"),
+                    column(record, columns, "role"),
+                    column(record, columns, "provider"),
+                    flag(column(record, columns, "emailVerified")),
+                    flag(column(record, columns, "accountNonLocked"))), null);
+        };
+    }
+
+    private static String column(List<String> record, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= record.size() || record.get(index).isEmpty()) {
+            return null;
+        }
+        return record.get(index);
+    }
+
+    private static Boolean flag(String value) {
+        return value == null ? null : "true".equalsIgnoreCase(value) || "1".equals(value);
+    }
+
+    // null if the row can be imported
+    private static String validate(ImportedUser user) {
+        if (user.email() == null || user.email().length() > MAX_EMAIL_LENGTH || !EMAIL.matcher(user.email().trim()).matches()) {
+            return "invalid email";
+        }
+        if (user.role() != null && !isConstant(Role.class, user.role())) {
+            return "unknown role " + user.role();
+        }
+        if (user.provider() != null && !isConstant(AuthProvider.class, user.provider())) {
+            return "unknown provider " + user.provider();
+        }
+        if (user.password() == null) {
+            return provider(user) == AuthProvider.LOCAL ? "missing password hash" : null;
+        }
+        return PASSWORD_HASH.matcher(user.password()).matches() ? null : "password is not a supported hash";
+    }
+
+    private void importChunk(List<Row> chunk, UserImportReport report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        // emails compare case-insensitively, as in MySQL's collation
+        Map<String, Row> byEmail = new LinkedHashMap<>();
+        for (Row row : chunk) {
+            if (byEmail.putIfAbsent(key(row.user().email()), row) != null) {
+                skip(report, 1);
+            }
+        }
+        // while resharding an email may also still be on its previous shard
+        Map<UserShard, List<String>> lookups = new LinkedHashMap<>();
+        for (String email : byEmail.keySet()) {
+            for (UserShard shard : userShards.locations(email)) {
+                lookups.computeIfAbsent(shard, s -> new ArrayList<>()).add(email);
+            }
+        }
+        int taken = 0;
+        for (Map.Entry<UserShard, List<String>> lookup : lookups.entrySet()) {
+            for (String email : lookup.getKey().users().findExistingEmails(lookup.getValue())) {
+                if (byEmail.remove(key(email)) != null) {
+                    taken++;
+                }
+            }
+        }
+        skip(report, taken);
+
+        Map<UserShard, List<Row>> byShard = new LinkedHashMap<>();
+        for (Map.Entry<String, Row> row : byEmail.entrySet()) {
+            byShard.computeIfAbsent(userShards.forEmail(row.getKey()), s -> new ArrayList<>()).add(row.getValue());
+        }
+        for (Map.Entry<UserShard, List<Row>> rows : byShard.entrySet()) {
+            importRows(rows.getKey(), rows.getValue(), report);
+        }
+    }
+
+    private void importRows(UserShard shard, List<Row> rows, UserImportReport report) {
+        if (insert(shard, rows)) {
+            imported(report, rows);
+            return;
+        }
+        for (Row row : rows) {
+            if (insert(shard, List.of(row))) {
+                imported(report, List.of(row));
+            } else {
+                skip(report, 1);
+            }
+        }
+    }
+
+    // false if an email was taken in the meantime
+    private boolean insert(UserShard shard, List<Row> rows) {
+        EntityManager entityManager = shard.entityManagerFactory().createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            for (Row row : rows) {
+                entityManager.persist(toUser(row.user()));
+            }
+            entityManager.flush();
+            entityManager.getTransaction().commit();
+            return true;
+        } catch (PersistenceException e) {
+            if (isConstraintViolation(e)) {
+                return false;
+            }
+            throw e;
+        } finally {
+            if (entityManager.getTransaction().isActive()) {
+                entityManager.getTransaction().rollback();
+            }
+            entityManager.close();
+        }
+    }
+
+    private static boolean isConstraintViolation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void imported(UserImportReport report, List<Row> rows) {
+        for (Row row : rows) {
+            knownEmails.add(row.user().email().trim());
+        }
+        report.setImported(report.getImported() + rows.size());
+        meterRegistry.counter("auth.transfer.imported", "result", "imported").increment(rows.size());
+    }
+
+    private void skip(UserImportReport report, int count) {
+        report.setSkipped(report.getSkipped() + count);
+        meterRegistry.counter("auth.transfer.imported", "result", "skipped").increment(count);
+    }
+
+    private void fail(UserImportReport report, long line, String error) {
+        report.setFailed(report.getFailed() + 1);
+        if (report.getErrors().size() < MAX_REPORTED_ERRORS) {
+            report.getErrors().add(line < 0 ? error : "line " + line + ": " + error);
+        }
+        meterRegistry.counter("auth.transfer.imported", "result", "failed").increment();
+    }
+
+    private static User toUser(ImportedUser row) {
+        return User.builder()
+                .email(row.email().trim())
+                .name(row.name())
+                .password(row.password())
+                .role(row.role() == null ? Role.USER : Role.valueOf(row.role().toUpperCase(Locale.ROOT)))
+                .provider(provider(row))
+                .emailVerified(row.emailVerified() == null || row.emailVerified())
+                .accountNonLocked(row.accountNonLocked() == null || row.accountNonLocked())
+                .build();
+    }
+
+    private static AuthProvider provider(ImportedUser row) {
+        return row.provider() == null ? AuthProvider.LOCAL : AuthProvider.valueOf(row.provider().toUpperCase(Locale.ROOT));
+    }
+
+    private static <E extends Enum<E>> boolean isConstant(Class<E> type, String name) {
+        try {
+            Enum.valueOf(type, name.toUpperCase(Locale.ROOT));
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static String key(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,123 @@
+package in.nikhilsaini.authify.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Hierarchical timing wheel: schedule, cancel and per-tick expiry are O(1) no matter how many timers exist.
+// Three levels of 64 slots. Level 0 slots are one tick wide, level 1 slots 64 ticks, level 2 slots 4096 ticks,
+// so deadlines up to 64^3 ticks ahead are placed directly; later ones sit in the last level 2 slot until they
+// come into range. Each time a lower level wraps, the current slot of the level above is cascaded down and its
+// timers re-placed by their remaining time.
+// Timers fire on the first advance() at or after their deadline, at most one tick late.
+public class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 3;
+
+    public static final class Timeout<T> {
+        private final T value;
+        private final long deadlineTick;
+        private Set<Timeout<T>> bucket;   // null once fired or cancelled
+
+        private Timeout(T value, long deadlineTick) {
+            this.value = value;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T value() {
+            return value;
+        }
+    }
+
+    private final long tickMillis;
+    private final long startMillis;
+    private final List<List<Set<Timeout<T>>>> levels = new ArrayList<>(LEVELS);
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.startMillis = nowMillis;
+        for (int level = 0; level < LEVELS; level++) {
+            List<Set<Timeout<T>>> slots = new ArrayList<>(SLOTS);
+            for (int slot = 0; slot < SLOTS; slot++) {
+                slots.add(new HashSet<>());
+            }
+            levels.add(slots);
+        }
+    }
+
+    public synchronized Timeout<T> schedule(T value, long deadlineMillis) {
+        long deadlineTick = Math.floorDiv(deadlineMillis - startMillis + tickMillis - 1, tickMillis);
+        Timeout<T> timeout = new Timeout<>(value, deadlineTick);
+        // the current tick has already been processed, anything due goes in the next one
+        place(timeout, currentTick + 1);
+        size++;
+        return timeout;
+    }
+
+    public synchronized void cancel(Timeout<T> timeout) {
+        if (timeout != null && timeout.bucket != null) {
+            timeout.bucket.remove(timeout);
+            timeout.bucket = null;
+            size--;
+        }
+    }
+
+    // moves the wheel up to nowMillis and returns the values whose deadline has passed
+    public synchronized List<T> advance(long nowMillis) {
+        long targetTick = Math.floorDiv(nowMillis - startMillis, tickMillis);
+        List<T> expired = new ArrayList<>();
+        while (currentTick < targetTick) {
+            currentTick++;
+            if ((currentTick & MASK) == 0) {
+                if (((currentTick >> SLOT_BITS) & MASK) == 0) {
+                    cascade(2, (int) ((currentTick >> (2 * SLOT_BITS)) & MASK));
+                }
+                cascade(1, (int) ((currentTick >> SLOT_BITS) & MASK));
+            }
+            Set<Timeout<T>> bucket = levels.get(0).get((int) (currentTick & MASK));
+            for (Timeout<T> timeout : bucket) {
+                timeout.bucket = null;
+                expired.add(timeout.value);
+            }
+            size -= bucket.size();
+            bucket.clear();
+        }
+        return expired;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void cascade(int level, int slot) {
+        Set<Timeout<T>> bucket = levels.get(level).get(slot);
+        List<Timeout<T>> timeouts = new ArrayList<>(bucket);
+        bucket.clear();
+        // runs before the current tick's slot is processed, so timers due now still fire this tick
+        for (Timeout<T> timeout : timeouts) {
+            place(timeout, currentTick);
+        }
+    }
+
+    private void place(Timeout<T> timeout, long earliestTick) {
+        long tick = Math.max(timeout.deadlineTick, earliestTick);
+        long delta = tick - currentTick;
+        Set<Timeout<T>> bucket;
+        if (delta < SLOTS) {
+            bucket = levels.get(0).get((int) (tick & MASK));
+        } else if (delta < (long) SLOTS << SLOT_BITS) {
+            bucket = levels.get(1).get((int) ((tick >> SLOT_BITS) & MASK));
+        } else {
+            long maxTick = currentTick + ((long) MASK << (2 * SLOT_BITS));
+            bucket = levels.get(2).get((int) ((Math.min(tick, maxTick) >> (2 * SLOT_BITS)) & MASK));
+        }
+        bucket.add(timeout);
+        timeout.bucket = bucket;
+    }
+}
@@ -0,0 +1,59 @@
+package in.nikhilsaini.authify.util;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Token bucket holding `capacity` tokens and refilling all of them over `period`.
+// Kept in the GCRA form: the whole state of one bucket is a single "theoretical arrival time" in an AtomicLong,
+// so a bucket costs one object per key and taking a token is one CAS, with no lock.
+// A bucket that has been idle for `period` is full again, so dropping idle state loses nothing.
+public class TokenBucket {
+
+    private final long intervalNanos;   // time to refill one token
+    private final long burstNanos;      // how far the arrival time may run ahead of now, capacity - 1 tokens
+    private final Duration period;
+
+    public TokenBucket(int capacity, Duration period) {
+        this.intervalNanos = Math.max(1, period.toNanos() / capacity);
+        this.burstNanos = intervalNanos * (capacity - 1);
+        this.period = period;
+    }
+
+    // "20/1m" = 20 requests, refilled over one minute; the period takes the usual property formats (30s, 5m, 1h)
+    public static TokenBucket parse(String spec) {
+        int slash = spec.indexOf('/');
+        if (slash < 0) {
+            throw new IllegalArgumentException("Expected <capacity>/<period>, got " + spec);
+        }
+        int capacity = Integer.parseInt(spec.substring(0, slash).trim());
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1: " + spec);
+        }
+        return new TokenBucket(capacity, DurationStyle.detectAndParse(spec.substring(slash + 1).trim()));
+    }
+
+    public static AtomicLong newState() {
+        return new AtomicLong(Long.MIN_VALUE);
+    }
+
+    // takes a token from the bucket whose state is given, returns 0 on success or the nanos until one is available
+    public long tryConsume(AtomicLong state, long nowNanos) {
+        while (true) {
+            long arrival = state.get();
+            long next = Math.max(arrival, nowNanos) + intervalNanos;
+            long wait = next - intervalNanos - burstNanos - nowNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (state.compareAndSet(arrival, next)) {
+                return 0;
+            }
+        }
+    }
+
+    public Duration period() {
+        return period;
+    }
+}
@@ -0,0 +1,89 @@
+-- The schema as Hibernate's ddl-auto=update left it, which every database before these migrations has.
+-- IF NOT EXISTS so it also runs on those databases (baselined at version 0): tables they already have are
+-- kept as they are, tables from later releases than theirs are created. tbl_users and temp_user are the two
+-- they already have, so here they are created as that release had them and everything added to them since is a
+-- migration of its own (V6), which runs on old and new databases alike.
+
+CREATE TABLE IF NOT EXISTS tbl_users (
+    id                 BIGINT       NOT NULL,
+    name               VARCHAR(255),
+    email              VARCHAR(255) NOT NULL,
+    password           VARCHAR(255),
+    role               ENUM ('ADMIN','USER'),
+    provider           ENUM ('GITHUB','GOOGLE','LOCAL'),
+    email_verified     BIT          NOT NULL,
+    account_non_locked BIT          NOT NULL,
+    otp                VARCHAR(255),
+    otp_generated_at   DATETIME(6),
+    otp_expiry         DATETIME(6),
+    reset_otp          VARCHAR(255),
+    reset_otp_expiry   DATETIME(6),
+    created_at         DATETIME(6),
+    updated_at         DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_users_email UNIQUE (email)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+-- user ids, handed out in blocks (User.ID_ALLOCATION_SIZE)
+CREATE TABLE IF NOT EXISTS tbl_id_generators (
+    sequence_name VARCHAR(255) NOT NULL,
+    next_val      BIGINT,
+    PRIMARY KEY (sequence_name)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+INSERT IGNORE INTO tbl_id_generators (sequence_name, next_val) VALUES ('tbl_users', 0);
+
+CREATE TABLE IF NOT EXISTS temp_user (
+    email      VARCHAR(255) NOT NULL,
+    name       VARCHAR(255),
+    password   VARCHAR(255),
+    otp_expiry DATETIME(6),
+    PRIMARY KEY (email)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS tbl_refresh_tokens (
+    id         VARCHAR(255) NOT NULL,
+    family_id  VARCHAR(255) NOT NULL,
+    email      VARCHAR(255) NOT NULL,
+    issued_at  DATETIME(6),
+    expires_at DATETIME(6),
+    used_at    DATETIME(6),
+    revoked    BIT          NOT NULL,
+    PRIMARY KEY (id),
+    INDEX idx_refresh_family (family_id),
+    INDEX idx_refresh_expires (expires_at)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS tbl_token_revocations (
+    id            BIGINT       NOT NULL AUTO_INCREMENT,
+    type          ENUM ('SUBJECT','TOKEN') NOT NULL,
+    revoked_value VARCHAR(255) NOT NULL,
+    not_before    DATETIME(6),
+    expires_at    DATETIME(6),
+    PRIMARY KEY (id),
+    INDEX idx_revocation_expires (expires_at)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS tbl_otp_codes (
+    id         VARCHAR(255) NOT NULL,
+    digest     VARCHAR(64)  NOT NULL,
+    expires_at DATETIME(6)  NOT NULL,
+    attempts   INTEGER      NOT NULL,
+    PRIMARY KEY (id),
+    INDEX idx_otp_expires (expires_at)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS tbl_email_outbox (
+    id              BIGINT       NOT NULL AUTO_INCREMENT,
+    type            ENUM ('PASSWORD_RESET_OTP','VERIFICATION_OTP','WELCOME') NOT NULL,
+    recipient       VARCHAR(255) NOT NULL,
+    payload         VARCHAR(255),
+    status          ENUM ('DEAD','PENDING','SENT') NOT NULL,
+    attempts        INTEGER      NOT NULL,
+    next_attempt_at DATETIME(6),
+    created_at      DATETIME(6),
+    sent_at         DATETIME(6),
+    last_error      VARCHAR(500),
+    PRIMARY KEY (id),
+    INDEX idx_outbox_due (type, status, next_attempt_at)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
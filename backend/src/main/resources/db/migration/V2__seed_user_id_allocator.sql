@@ -0,0 +1,9 @@
+-- tbl_users ids used to come from AUTO_INCREMENT and the table-based allocator starts counting from 1, so on a
+-- database that already has users it is moved past the highest existing id. The stored value is the top of the
+-- next block, the block itself starts 49 (User.ID_ALLOCATION_SIZE - 1) below it. Never lowers it.
+
+UPDATE tbl_id_generators
+SET next_val = (SELECT MAX(id) + 50 FROM tbl_users)
+WHERE sequence_name = 'tbl_users'
+  AND EXISTS (SELECT 1 FROM tbl_users)
+  AND next_val < (SELECT MAX(id) + 50 FROM tbl_users);
@@ -0,0 +1,6 @@
+-- EmailOutboxRepository.deleteSentBefore scanned the whole outbox.
+-- Indexes on existing tables are added online: ${onlineDdl} is ", ALGORITHM=INPLACE, LOCK=NONE" on MySQL, so
+-- reads and writes carry on while the index builds, and the migration fails instead of locking the table if
+-- InnoDB can't do that.
+
+ALTER TABLE tbl_email_outbox ADD INDEX idx_outbox_sent (status, sent_at)${onlineDdl};
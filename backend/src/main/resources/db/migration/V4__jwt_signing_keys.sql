@@ -0,0 +1,13 @@
+-- Asymmetric JWT signing keys (auth.jwt.algorithm RS256 / ES256 / EdDSA). Every node loads and rotates them from
+-- here, so a token signed on one node verifies on all of them and the JWKS is the same everywhere.
+-- private_key is AES-GCM sealed with a key derived from auth.jwt.secret.
+
+CREATE TABLE IF NOT EXISTS tbl_jwt_keys (
+    kid         VARCHAR(64)   NOT NULL,
+    algorithm   VARCHAR(16)   NOT NULL,
+    private_key VARCHAR(4096) NOT NULL,
+    public_key  VARCHAR(1024) NOT NULL,
+    created_at  DATETIME(6)   NOT NULL,
+    retires_at  DATETIME(6),
+    PRIMARY KEY (kid)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
@@ -0,0 +1,9 @@
+-- TokenRevocationList tailed the log by id, but an AUTO_INCREMENT id is taken at insert and becomes visible at
+-- commit, so a node could read past an id whose row showed up later and never apply it. It tails by created_at
+-- now. The DB sets it, so every node (including ones still running the previous release) writes it from one
+-- clock. Existing rows get the time of the migration, they are replayed at startup either way.
+-- The column is added without ${onlineDdl}: the table only holds unexpired revocations, so it is small.
+
+ALTER TABLE tbl_token_revocations ADD COLUMN created_at DATETIME(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6);
+
+ALTER TABLE tbl_token_revocations ADD INDEX idx_revocation_created (created_at)${onlineDdl};
@@ -0,0 +1,12 @@
+-- What tbl_users and temp_user gained after the release the migrations start from. V1 leaves both tables of an
+-- existing database alone and creates them as that release had them on a new one, so this runs on both.
+-- ${onlineDdl} as in V3: the users table is the big one, reads and writes (logins) carry on while these run.
+
+-- User.tokenVersion, bumped to invalidate every token of a user at once; existing users start at 0
+ALTER TABLE tbl_users ADD COLUMN token_version INTEGER NOT NULL DEFAULT 0${onlineDdl};
+
+-- the KnownEmails tail and the ExpiredOtpPurger range scans
+ALTER TABLE tbl_users ADD INDEX idx_users_created_at (created_at)${onlineDdl};
+ALTER TABLE tbl_users ADD INDEX idx_users_otp_expiry (otp_expiry)${onlineDdl};
+ALTER TABLE tbl_users ADD INDEX idx_users_reset_otp_expiry (reset_otp_expiry)${onlineDdl};
+ALTER TABLE temp_user ADD INDEX idx_temp_user_otp_expiry (otp_expiry)${onlineDdl};
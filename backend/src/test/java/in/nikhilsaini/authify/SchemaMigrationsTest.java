@@ -0,0 +1,117 @@
+package in.nikhilsaini.authify;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs the Flyway migrations the way application.properties configures them, on a new database and on one left by
+// the release before them, over embedded H2 in MySQL mode, then validates the entity mapping against the result
+class SchemaMigrationsTest {
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        pools.forEach(HikariDataSource::close);
+    }
+
+    @Test
+    void upgradesADatabaseOfTheReleaseBeforeTheMigrations() throws Exception {
+        HikariDataSource dataSource = database();
+        new ResourceDatabasePopulator(new ClassPathResource("db/baseline/schema.sql")).execute(dataSource);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.update("insert into tbl_users (id, email, name, email_verified, account_non_locked)"
+                + " values (41, 'existing@authify.test', 'Existing', true, true)");
+
+        migrate(dataSource);
+
+        assertThat(jdbc.queryForObject("select token_version from tbl_users where id = 41", Integer.class)).isZero();
+        assertThat(jdbc.queryForObject("select next_val from tbl_id_generators where sequence_name = 'tbl_users'",
+                Long.class)).isEqualTo(91);
+        assertIndexes(dataSource);
+        validate(dataSource);
+    }
+
+    @Test
+    void createsANewDatabase() throws Exception {
+        HikariDataSource dataSource = database();
+
+        migrate(dataSource);
+
+        assertIndexes(dataSource);
+        validate(dataSource);
+    }
+
+    private static void migrate(HikariDataSource dataSource) {
+        Flyway.configure()
+                .dataSource(dataSource)
+                .placeholders(Map.of("onlineDdl", ""))
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+    }
+
+    private static void assertIndexes(HikariDataSource dataSource) throws Exception {
+        assertThat(indexes(dataSource, "tbl_users"))
+                .contains("idx_users_created_at", "idx_users_otp_expiry", "idx_users_reset_otp_expiry");
+        assertThat(indexes(dataSource, "temp_user")).contains("idx_temp_user_otp_expiry");
+    }
+
+    private static Set<String> indexes(HikariDataSource dataSource, String table) throws Exception {
+        Set<String> names = new HashSet<>();
+        try (Connection connection = dataSource.getConnection();
+             ResultSet indexes = connection.getMetaData().getIndexInfo(null, null, table, false, false)) {
+            while (indexes.next()) {
+                names.add(indexes.getString("INDEX_NAME"));
+            }
+        }
+        return names;
+    }
+
+    // what ddl-auto=validate does at startup
+    private static void validate(HikariDataSource dataSource) {
+        LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setPackagesToScan("in.nikhilsaini.authify.entity");
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factoryBean.setJpaPropertyMap(Map.of(
+                AvailableSettings.HBM2DDL_AUTO, "validate",
+                AvailableSettings.DIALECT, "org.hibernate.dialect.H2Dialect",
+                AvailableSettings.USE_SECOND_LEVEL_CACHE, false,
+                AvailableSettings.PHYSICAL_NAMING_STRATEGY, CamelCaseToUnderscoresNamingStrategy.class.getName(),
+                AvailableSettings.IMPLICIT_NAMING_STRATEGY, SpringImplicitNamingStrategy.class.getName()));
+        factoryBean.afterPropertiesSet();
+        factoryBean.destroy();
+    }
+
+    private HikariDataSource database() {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:" + UUID.randomUUID()
+                + ";DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER");
+        pool.setUsername("sa");
+        pool.setMaximumPoolSize(2);
+        pools.add(pool);
+        return pool;
+    }
+}
@@ -0,0 +1,176 @@
+package in.nikhilsaini.authify.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Wires the routing the way ReplicaDataSourceConfig does, over embedded H2 databases that each know their own name
+class ReplicaRoutingDataSourceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    private final String run = UUID.randomUUID().toString();
+
+    private ReplicaRouting routing;
+    private ReplicaRoutingDataSource replicaRouting;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    @AfterEach
+    void tearDown() {
+        pools.forEach(HikariDataSource::close);
+    }
+
+    @Test
+    void readOnlyTransactionsGoToTheReplica() {
+        setUp(Duration.ofSeconds(5), database("replica-1"));
+
+        assertThat(readOnlyWhereAmI()).isEqualTo("replica-1");
+        assertThat(reads("replica")).isEqualTo(1);
+    }
+
+    @Test
+    void writesGoToThePrimary() {
+        setUp(Duration.ofSeconds(5), database("replica-1"));
+
+        String seen = readWrite.execute(tx -> {
+            jdbc.update("insert into notes(text) values ('written')");
+            return whereAmI();
+        });
+
+        assertThat(seen).isEqualTo("primary");
+        assertThat(jdbc.queryForObject("select count(*) from notes", Integer.class)).isEqualTo(1);
+        assertThat(reads("replica")).isZero();
+    }
+
+    @Test
+    void onPrimaryKeepsReadOnlyTransactionsOnThePrimary() {
+        setUp(Duration.ofSeconds(5), database("replica-1"));
+
+        assertThat(routing.onPrimary(this::readOnlyWhereAmI)).isEqualTo("primary");
+        assertThat(reads("pinned")).isEqualTo(1);
+        // the pin ends with the lookup
+        assertThat(readOnlyWhereAmI()).isEqualTo("replica-1");
+    }
+
+    @Test
+    void readsOfARecentlyWrittenUserStayOnThePrimaryForTheStickyWindow() throws InterruptedException {
+        setUp(Duration.ofMillis(200), database("replica-1"));
+
+        routing.written("Bob@Authify.test");
+
+        assertThat(routing.readFor("bob@authify.test", this::readOnlyWhereAmI)).isEqualTo("primary");
+        assertThat(routing.readFor("alice@authify.test", this::readOnlyWhereAmI))
+                .isEqualTo("replica-1");
+
+        Thread.sleep(300);
+        assertThat(routing.readFor("bob@authify.test", this::readOnlyWhereAmI)).isEqualTo("replica-1");
+    }
+
+    @Test
+    void anUnhealthyReplicaIsSkippedUntilItRecovers() {
+        HikariDataSource down = missingDatabase("replica-1");
+        setUp(Duration.ofSeconds(5), down, database("replica-2"));
+
+        replicaRouting.checkHealth();
+        for (int i = 0; i < 4; i++) {
+            assertThat(readOnlyWhereAmI()).isEqualTo("replica-2");
+        }
+
+        create("replica-1");
+        replicaRouting.checkHealth();
+        List<String> seen = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            seen.add(readOnlyWhereAmI());
+        }
+        assertThat(seen).contains("replica-1", "replica-2");
+    }
+
+    @Test
+    void readsFallBackToThePrimaryWithoutAHealthyReplica() {
+        setUp(Duration.ofSeconds(5), missingDatabase("replica-1"));
+
+        // the failed connection attempt marks it down, the next read doesn't try it again
+        assertThat(readOnlyWhereAmI()).isEqualTo("primary");
+        assertThat(readOnlyWhereAmI()).isEqualTo("primary");
+        assertThat(reads("fallback")).isEqualTo(2);
+        assertThat(meterRegistry.get("auth.datasource.replica.healthy").gauge().value()).isZero();
+    }
+
+    private void setUp(Duration stickyWindow, HikariDataSource... replicas) {
+        HikariDataSource primary = database("primary");
+        List<ReplicaRoutingDataSource.Replica> named = new ArrayList<>();
+        for (HikariDataSource replica : replicas) {
+            named.add(new ReplicaRoutingDataSource.Replica(replica.getPoolName(), replica));
+        }
+        replicaRouting = new ReplicaRoutingDataSource(primary, named, Duration.ofSeconds(1), meterRegistry);
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary);
+        dataSource.setReadOnlyDataSource(replicaRouting);
+
+        routing = new ReplicaRouting("jdbc:h2:mem:replica", stickyWindow, 1000);
+        jdbc = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    private String whereAmI() {
+        return jdbc.queryForObject("select name from whoami", String.class);
+    }
+
+    private String readOnlyWhereAmI() {
+        return readOnly.execute(tx -> whereAmI());
+    }
+
+    private double reads(String target) {
+        return meterRegistry.get("auth.datasource.reads").tag("target", target).counter().count();
+    }
+
+    private HikariDataSource database(String name) {
+        create(name);
+        return pool(name, url(name));
+    }
+
+    // a replica that can't be reached until create(name) is called
+    private HikariDataSource missingDatabase(String name) {
+        HikariDataSource pool = pool(name, url(name) + ";IFEXISTS=TRUE");
+        pool.setInitializationFailTimeout(-1);
+        pool.setConnectionTimeout(250);
+        return pool;
+    }
+
+    private void create(String name) {
+        JdbcTemplate setup = new JdbcTemplate(pool(name + "-setup", url(name)));
+        setup.execute("create table whoami(name varchar(32))");
+        setup.update("insert into whoami values (?)", name);
+        setup.execute("create table notes(text varchar(32))");
+    }
+
+    private HikariDataSource pool(String name, String url) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName(name);
+        pool.setJdbcUrl(url);
+        pool.setUsername("sa");
+        pool.setMaximumPoolSize(2);
+        pools.add(pool);
+        return pool;
+    }
+
+    private String url(String name) {
+        return "jdbc:h2:mem:" + name + "-" + run + ";DB_CLOSE_DELAY=-1";
+    }
+}
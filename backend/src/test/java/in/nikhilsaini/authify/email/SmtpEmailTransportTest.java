@@ -0,0 +1,129 @@
+package in.nikhilsaini.authify.email;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs the pooled SMTP transport against an embedded GreenMail server
+class SmtpEmailTransportTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private static final EmailTemplate TEMPLATE =
+            EmailTemplate.compile("Your code", "<p>Hi {{name}}, your code is {{otp}}</p>");
+
+    private SmtpEmailTransport transport;
+
+    @AfterEach
+    void tearDown() {
+        if (transport != null) {
+            ReflectionTestUtils.invokeMethod(transport, "close");
+        }
+    }
+
+    @Test
+    void sendsSeveralMessagesOverOnePooledConnection() throws Exception {
+        transport = transport(100, Duration.ofSeconds(30));
+
+        transport.send(TEMPLATE, List.of(recipient("a@authify.test", "111111"), recipient("b@authify.test", "222222")));
+        Object connection = idle().peekFirst();
+        transport.send(TEMPLATE, List.of(recipient("c@authify.test", "333333")));
+
+        assertThat(idle()).hasSize(1);
+        assertThat(idle().peekFirst()).isSameAs(connection);
+        assertThat(ReflectionTestUtils.getField(connection, "messagesSent")).isEqualTo(3);
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertThat(received).hasSize(3);
+        assertThat(received[1].getAllRecipients()[0].toString()).isEqualTo("b@authify.test");
+        assertThat(received[1].getSubject()).isEqualTo("Your code");
+        assertThat(GreenMailUtil.getBody(received[1])).contains("your code is 222222");
+    }
+
+    @Test
+    void replacesAConnectionAfterMaxMessagesPerConnection() throws Exception {
+        transport = transport(2, Duration.ofSeconds(30));
+
+        transport.send(TEMPLATE, List.of(recipient("a@authify.test", "111111")));
+        Transport first = transportOf(idle().peekFirst());
+        transport.send(TEMPLATE, List.of(recipient("b@authify.test", "222222"), recipient("c@authify.test", "333333")));
+
+        assertThat(first.isConnected()).isFalse();
+        assertThat(transportOf(idle().peekFirst())).isNotSameAs(first);
+        assertThat(ReflectionTestUtils.getField(idle().peekFirst(), "messagesSent")).isEqualTo(1);
+        assertThat(greenMail.getReceivedMessages()).hasSize(3);
+    }
+
+    @Test
+    void reconnectsWhenTheServerDroppedAnIdleConnection() throws Exception {
+        transport = transport(100, Duration.ofSeconds(30));
+        transport.send(TEMPLATE, List.of(recipient("a@authify.test", "111111")));
+        Transport first = transportOf(idle().peekFirst());
+
+        // restarts the server, which closes every open session
+        greenMail.reset();
+        transport.send(TEMPLATE, List.of(recipient("b@authify.test", "222222")));
+
+        assertThat(transportOf(idle().peekFirst())).isNotSameAs(first);
+        assertThat(greenMail.getReceivedMessages()).hasSize(1);
+        assertThat(greenMail.getReceivedMessages()[0].getAllRecipients()[0].toString()).isEqualTo("b@authify.test");
+    }
+
+    @Test
+    void retiresConnectionsIdleLongerThanMaxIdle() throws Exception {
+        transport = transport(100, Duration.ofMillis(50));
+        transport.send(TEMPLATE, List.of(recipient("a@authify.test", "111111")));
+        Transport first = transportOf(idle().peekFirst());
+
+        Thread.sleep(100);
+        transport.send(TEMPLATE, List.of(recipient("b@authify.test", "222222")));
+
+        assertThat(first.isConnected()).isFalse();
+        assertThat(transportOf(idle().peekFirst())).isNotSameAs(first);
+        assertThat(greenMail.getReceivedMessages()).hasSize(2);
+    }
+
+    private static SmtpEmailTransport transport(int maxMessagesPerConnection, Duration maxIdle) {
+        SmtpEmailTransport transport = new SmtpEmailTransport();
+        ReflectionTestUtils.setField(transport, "fromEmail", "noreply@authify.test");
+        ReflectionTestUtils.setField(transport, "host", "localhost");
+        ReflectionTestUtils.setField(transport, "port", greenMail.getSmtp().getPort());
+        ReflectionTestUtils.setField(transport, "username", "");
+        ReflectionTestUtils.setField(transport, "password", "");
+        ReflectionTestUtils.setField(transport, "starttls", false);
+        ReflectionTestUtils.setField(transport, "poolSize", 2);
+        ReflectionTestUtils.setField(transport, "maxMessagesPerConnection", maxMessagesPerConnection);
+        ReflectionTestUtils.setField(transport, "maxIdle", maxIdle);
+        ReflectionTestUtils.setField(transport, "connectTimeout", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(transport, "readTimeout", Duration.ofSeconds(2));
+        ReflectionTestUtils.invokeMethod(transport, "init");
+        return transport;
+    }
+
+    private static EmailRecipient recipient(String email, String otp) {
+        return new EmailRecipient(email, Map.of("name", "Test", "otp", otp));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Deque<Object> idle() {
+        return (Deque<Object>) ReflectionTestUtils.getField(transport, "idle");
+    }
+
+    private static Transport transportOf(Object connection) {
+        return (Transport) ReflectionTestUtils.getField(connection, "transport");
+    }
+}
@@ -0,0 +1,204 @@
+package in.nikhilsaini.authify.shard;
+
+import in.nikhilsaini.authify.config.UserShardsConfig;
+import in.nikhilsaini.authify.entity.TempUser;
+import in.nikhilsaini.authify.entity.User;
+import in.nikhilsaini.authify.repository.TempUserRepository;
+import in.nikhilsaini.authify.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.flyway.FlywayProperties;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Builds the shards the way UserShardsConfig does, over embedded H2 databases in MySQL mode (and, like MySQL,
+// comparing emails case-insensitively)
+class UserShardsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<UserShards> opened = new ArrayList<>();
+    private final String run = UUID.randomUUID().toString();
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(UserShards::close);
+    }
+
+    @Test
+    void theRingSpreadsEmailsEvenlyAndAnAddedShardOnlyTakesItsShare() {
+        ShardRing three = new ShardRing(List.of("a", "b", "c"), 160);
+        ShardRing four = new ShardRing(List.of("a", "b", "c", "d"), 160);
+        List<String> keys = IntStream.range(0, 30_000).mapToObj(i -> "user" + i + "@authify.test").toList();
+
+        Map<String, Integer> perShard = new HashMap<>();
+        int moved = 0;
+        for (String key : keys) {
+            String before = three.ownerOf(key);
+            perShard.merge(before, 1, Integer::sum);
+            String after = four.ownerOf(key);
+            if (!after.equals(before)) {
+                moved++;
+                assertThat(after).isEqualTo("d");
+            }
+        }
+
+        assertThat(perShard).hasSize(3);
+        perShard.values().forEach(count -> assertThat(count).isBetween(8_500, 11_500));
+        assertThat(moved).isBetween(6_000, 9_000);
+    }
+
+    @Test
+    void callsKeyedByEmailGoToTheShardOwningIt() throws Exception {
+        UserShards shards = shards(List.of("a", "b", "c"), List.of());
+        UserRepository users = EmailRoutedRepository.users(shards, null, meterRegistry);
+        List<String> emails = IntStream.range(0, 30).mapToObj(i -> "user" + i + "@authify.test").toList();
+
+        emails.forEach(email -> users.save(user(email)));
+
+        for (String email : emails) {
+            UserShard owner = shards.forEmail(email);
+            for (UserShard shard : shards.all()) {
+                assertThat(shard.users().existsByEmail(email)).isEqualTo(shard.equals(owner));
+            }
+            assertThat(users.findByEmail(email.toUpperCase())).get().extracting(User::getEmail).isEqualTo(email);
+        }
+        assertThat(shards.all()).allSatisfy(shard ->
+                assertThat(shard.users().findEmailsAfter(0, PageRequest.of(0, 100))).isNotEmpty());
+
+        String email = emails.get(0);
+        assertThat(users.updatePassword(email, "rehashed")).isEqualTo(1);
+        assertThat(shards.forEmail(email).users().findByEmail(email)).get()
+                .extracting(User::getPassword).isEqualTo("rehashed");
+    }
+
+    @Test
+    void pendingRegistrationsAreRoutedByTheirEmailId() throws Exception {
+        UserShards shards = shards(List.of("a", "b", "c"), List.of());
+        TempUserRepository tempUsers = EmailRoutedRepository.tempUsers(shards, null, meterRegistry);
+        List<String> emails = IntStream.range(0, 30).mapToObj(i -> "pending" + i + "@authify.test").toList();
+
+        emails.forEach(email -> tempUsers.save(tempUser(email)));
+
+        for (String email : emails) {
+            assertThat(tempUsers.existsById(email)).isTrue();
+            assertThat(tempUsers.findById(email)).isPresent();
+            for (UserShard shard : shards.all()) {
+                assertThat(shard.tempUsers().existsById(email)).isEqualTo(shard.equals(shards.forEmail(email)));
+            }
+        }
+        tempUsers.deleteById(emails.get(0));
+        assertThat(shards.forEmail(emails.get(0)).tempUsers().existsById(emails.get(0))).isFalse();
+    }
+
+    @Test
+    void callsNotKeyedByEmailCantBeRouted() throws Exception {
+        UserShards shards = shards(List.of("a", "b"), List.of());
+        UserRepository users = EmailRoutedRepository.users(shards, null, meterRegistry);
+        TempUserRepository tempUsers = EmailRoutedRepository.tempUsers(shards, null, meterRegistry);
+
+        assertThatThrownBy(users::findAll).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(users::count).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> users.findById(1L)).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> users.findEmailsAfter(0, PageRequest.of(0, 10)))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> tempUsers.findExpired(LocalDateTime.now(), PageRequest.of(0, 10)))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void reshardingMovesUsersOnLookupAndTheSweepMovesTheRest() throws Exception {
+        UserShards before = shards(List.of("a", "b"), List.of());
+        UserRepository oldUsers = EmailRoutedRepository.users(before, null, meterRegistry);
+        TempUserRepository oldTempUsers = EmailRoutedRepository.tempUsers(before, null, meterRegistry);
+        List<String> emails = IntStream.range(0, 60).mapToObj(i -> "user" + i + "@authify.test").toList();
+        emails.forEach(email -> oldUsers.save(user(email)));
+        emails.forEach(email -> oldTempUsers.save(tempUser(email)));
+        Timestamp registered = Timestamp.valueOf(LocalDateTime.now().minusDays(30).truncatedTo(ChronoUnit.SECONDS));
+        emails.forEach(email -> before.forEmail(email).users().restoreCreatedAt(email, registered));
+
+        UserShards shards = shards(List.of("a", "b", "c"), List.of("a", "b"));
+        Resharder resharder = new Resharder(shards, meterRegistry);
+        UserRepository users = EmailRoutedRepository.users(shards, resharder, meterRegistry);
+        List<String> moving = emails.stream().filter(email -> shards.previousOwner(email) != null).toList();
+        assertThat(moving).isNotEmpty();
+        assertThat(shards.all()).extracting(UserShard::name).containsExactlyInAnyOrder("a", "b", "c");
+
+        // a lookup moves that one user before it reads
+        String email = moving.get(0);
+        UserShard from = shards.previousOwner(email);
+        assertThat(users.findByEmail(email)).get().extracting(User::getCreatedAt).isEqualTo(registered);
+        assertThat(from.users().existsByEmail(email)).isFalse();
+        assertThat(from.tempUsers().existsById(email)).isFalse();
+        assertThat(shards.forEmail(email).tempUsers().existsById(email)).isTrue();
+
+        resharder.sweep();
+        assertThat(shards.resharding()).isTrue();
+        for (String each : emails) {
+            for (UserShard shard : shards.all()) {
+                boolean owner = shard.equals(shards.forEmail(each));
+                assertThat(shard.users().existsByEmail(each)).isEqualTo(owner);
+                assertThat(shard.tempUsers().existsById(each)).isEqualTo(owner);
+            }
+        }
+
+        // nothing left to move
+        resharder.sweep();
+        assertThat(shards.resharding()).isFalse();
+        assertThat(shards.previousOwner(email)).isNull();
+        assertThat(shards.locations(email)).containsExactly(shards.forEmail(email));
+    }
+
+    private UserShards shards(List<String> current, List<String> previous) throws Exception {
+        DataSourceProperties dataSourceProperties = new DataSourceProperties();
+        dataSourceProperties.setDriverClassName("org.h2.Driver");
+        dataSourceProperties.setUsername("sa");
+        dataSourceProperties.setPassword("");
+        dataSourceProperties.afterPropertiesSet();
+        FlywayProperties flywayProperties = new FlywayProperties();
+        flywayProperties.setPlaceholders(Map.of("onlineDdl", ""));
+        EntityManagerFactoryBuilder entityManagerFactoryBuilder = new EntityManagerFactoryBuilder(
+                new HibernateJpaVendorAdapter(), dataSource -> Map.of(
+                        AvailableSettings.DIALECT, "org.hibernate.dialect.H2Dialect",
+                        AvailableSettings.PHYSICAL_NAMING_STRATEGY, CamelCaseToUnderscoresNamingStrategy.class.getName(),
+                        AvailableSettings.IMPLICIT_NAMING_STRATEGY, SpringImplicitNamingStrategy.class.getName()),
+                null);
+
+        UserShards shards = new UserShardsConfig().shardedUserShards(dataSourceProperties, flywayProperties,
+                entityManagerFactoryBuilder, meterRegistry, entries(current), entries(previous), "", "", 2, 160);
+        opened.add(shards);
+        return shards;
+    }
+
+    private List<String> entries(List<String> names) {
+        return names.stream().map(name -> name + "=jdbc:h2:mem:shard-" + name + "-" + run
+                + ";DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER;IGNORECASE=TRUE").toList();
+    }
+
+    private static User user(String email) {
+        return User.builder().name("Test").email(email).password("hash").build();
+    }
+
+    private static TempUser tempUser(String email) {
+        return TempUser.builder().email(email).name("Test").password("hash")
+                .otpExpiry(LocalDateTime.now().plusMinutes(10)).build();
+    }
+}
@@ -0,0 +1,9 @@
+-- tbl_users and temp_user as Hibernate's ddl-auto=update created them (MySQLDialect) from the entities of the
+-- release before the Flyway migrations; SchemaMigrationsTest upgrades a database in this shape
+
+create table tbl_users (account_non_locked bit not null, email_verified bit not null, created_at datetime(6), id bigint not null auto_increment, otp_expiry datetime(6), otp_generated_at datetime(6), reset_otp_expiry datetime(6), updated_at datetime(6), email varchar(255) not null, name varchar(255), otp varchar(255), password varchar(255), reset_otp varchar(255), provider enum ('GITHUB','GOOGLE','LOCAL'), role enum ('ADMIN','USER'), primary key (id)) engine=InnoDB;
+
+create table temp_user (otp_expiry datetime(6), otp_generated_at datetime(6), email varchar(255) not null, name varchar(255), otp varchar(255), password varchar(255), primary key (email)) engine=InnoDB;
+
+alter table tbl_users add constraint UKj562wwmipqt96rkoqbo0jc34 unique (email);
+